@@ -0,0 +1,50 @@
+package pinej.benchmarks;
+
+import pinej.PineAccessor;
+import pinej.PineClient;
+import pinej.PineEnums;
+import pinej.testing.FakePineServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Client setups the benchmarks run against, none of which need a running emulator.
+ */
+public enum Backend {
+    /**
+     * Client on top of {@link StubPineAccessor}, measuring only the client.
+     */
+    STUB,
+    /**
+     * Socket accessor talking to an in-process {@link FakePineServer}.
+     */
+    SOCKET;
+
+    /**
+     * Opened client together with the resources it needs.
+     */
+    public record Connection(PineClient client, FakePineServer server, Path directory) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            client.close();
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    public Connection open(int memorySize) throws IOException {
+        return switch (this) {
+            case STUB -> new Connection(new PineClient(new StubPineAccessor(), PineEnums.TargetPlatform.PS2), null, null);
+            case SOCKET -> {
+                Path directory = Files.createTempDirectory("pinej-bench");
+                FakePineServer server = FakePineServer.start(directory, PineEnums.TargetPlatform.PS2, memorySize);
+                PineClient client = new PineClient(PineAccessor.ofSocket(directory), PineEnums.TargetPlatform.PS2);
+                yield new Connection(client, server, directory);
+            }
+        };
+    }
+}
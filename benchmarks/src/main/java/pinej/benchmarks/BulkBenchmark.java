@@ -0,0 +1,104 @@
+package pinej.benchmarks;
+
+import pinej.PineClient;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of bulk range transfers compared with reading and writing the same range one scalar at a time.
+ * <p>
+ * The {@code bytes} secondary result is reported in bytes per second; divide by 1048576 for MB/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign"})
+@State(Scope.Thread)
+public class BulkBenchmark {
+
+    @Param({"SOCKET"})
+    public Backend backend;
+
+    @Param({"4096", "65536"})
+    public int length;
+
+    private Backend.Connection connection;
+
+    private PineClient client;
+
+    private ByteBuffer buffer;
+
+    /**
+     * Counts transferred bytes so that JMH reports them as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        connection = backend.open(1024 * 1024);
+        client = connection.client();
+        buffer = ByteBuffer.allocateDirect(length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void readBytes(Bytes bytes) {
+        buffer.clear();
+        client.readBytes(0, buffer);
+        bytes.bytes += length;
+    }
+
+    @Benchmark
+    public void readLongPerCall(Bytes bytes, Blackhole blackhole) {
+        for (int address = 0; address < length; address += Long.BYTES) {
+            blackhole.consume(client.readLong(address));
+        }
+        bytes.bytes += length;
+    }
+
+    @Benchmark
+    public void writeBytes(Bytes bytes) {
+        buffer.clear();
+        client.writeBytes(0, buffer);
+        bytes.bytes += length;
+    }
+
+    @Benchmark
+    public void writeLongPerCall(Bytes bytes) {
+        for (int address = 0; address < length; address += Long.BYTES) {
+            client.write(address, (long) address);
+        }
+        bytes.bytes += length;
+    }
+}
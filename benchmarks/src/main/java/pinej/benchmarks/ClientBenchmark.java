@@ -0,0 +1,98 @@
+package pinej.benchmarks;
+
+import pinej.PineBatch;
+import pinej.PineClient;
+import pinej.PineEnums;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the single-call and batched paths of {@link PineClient}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign"})
+@State(Scope.Thread)
+public class ClientBenchmark {
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"STUB", "SOCKET"})
+    public Backend backend;
+
+    private Backend.Connection connection;
+
+    private PineClient client;
+
+    private PineBatch batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        connection = backend.open(1024 * 1024);
+        client = connection.client();
+        batch = client.batch();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.readInt(i * Integer.BYTES);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int readInt() {
+        return client.readInt(0x100);
+    }
+
+    @Benchmark
+    public void writeInt() {
+        client.write(0x100, 42);
+    }
+
+    @Benchmark
+    public PineEnums.Status getStatus() {
+        return client.getStatus();
+    }
+
+    @Benchmark
+    public Optional<PineClient.GameInfo> getGameInfo() {
+        return client.getGameInfo();
+    }
+
+    /**
+     * 256 scalar reads sent as one batch.
+     */
+    @Benchmark
+    public void batchReadInt256() {
+        batch.send();
+    }
+
+    /**
+     * The same 256 scalar reads as {@link #batchReadInt256()}, one IPC call each.
+     */
+    @Benchmark
+    public void singleReadInt256(Blackhole blackhole) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(client.readInt(i * Integer.BYTES));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package pinej.benchmarks;
+
+import pinej.PineAccessor;
+import jdk.incubator.foreign.MemoryAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of the downcalls in the native accessor. Needs the pine_c library, given with
+ * {@code -p library=/path/to/libpine_c.so}. Without a running emulator the calls fail fast inside the library, which
+ * still exercises the whole Java side of the downcall. Every benchmark runs with regular and with trivial downcalls;
+ * the calls made outside a batch use regular downcalls in both modes and serve as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign", "--enable-native-access=ALL-UNNAMED"})
+@State(Scope.Thread)
+public class NativeAccessorBenchmark {
+    private static final byte READ_32 = 2;
+    private static final byte WRITE_32 = 6;
+    private static final byte BATCH = 1;
+    private static final int BATCH_SIZE = 64;
+
+    @Param({""})
+    public String library;
+
+    @Param({"false", "true"})
+    public boolean trivialCalls;
+
+    private PineAccessor accessor;
+
+    private MemoryAddress ipc;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (library.isEmpty()) {
+            throw new IllegalStateException("Give the path of the pine_c library with -p library=<path>");
+        }
+        accessor = PineAccessor.ofLibrary(Path.of(library), trivialCalls);
+        ipc = accessor.allocatePS2();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        accessor.deletePS2(ipc);
+    }
+
+    @Benchmark
+    public long read() {
+        return accessor.read(ipc, 0x100, READ_32, (byte) 0);
+    }
+
+    @Benchmark
+    public void write() {
+        accessor.write(ipc, 0x100, 42, WRITE_32, (byte) 0);
+    }
+
+    @Benchmark
+    public int getError() {
+        return accessor.getError(ipc);
+    }
+
+    @Benchmark
+    public int emuStatus() {
+        return accessor.emuStatus(ipc, (byte) 0);
+    }
+
+    /**
+     * Queues a batch of reads and fetches their replies, without sending it to the emulator.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long batchedReads() {
+        accessor.initializeBatch(ipc);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            accessor.read(ipc, 0x100 + i * 4, READ_32, BATCH);
+        }
+        int cmd = accessor.finalizeBatch(ipc);
+        long sum = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            sum += accessor.getReply(ipc, cmd, i, READ_32);
+        }
+        accessor.freeBatchCommand(cmd);
+        return sum;
+    }
+
+    /**
+     * Queues a batch of writes, without sending it to the emulator.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batchedWrites() {
+        accessor.initializeBatch(ipc);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            accessor.write(ipc, 0x100 + i * 4, i, WRITE_32, BATCH);
+        }
+        accessor.freeBatchCommand(accessor.finalizeBatch(ipc));
+    }
+}
@@ -0,0 +1,59 @@
+package pinej.benchmarks;
+
+import pinej.PineClient;
+import pinej.PineEnums;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of native clients. Needs the pine_c library, given with {@code -p library=/path/to/libpine_c.so}.
+ * <p>
+ * {@code timeToFirstRead} runs once per fresh JVM, so it includes loading the library and linking the handles the
+ * first read needs. {@code newClient} measures creating and closing a client once everything is loaded and linked.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    @Param({""})
+    public String library;
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(value = 20, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign", "--enable-native-access=ALL-UNNAMED"})
+    public int timeToFirstRead() {
+        try (PineClient client = new PineClient(library(), PineEnums.TargetPlatform.PS2)) {
+            return client.readInt(0x100);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.foreign", "--enable-native-access=ALL-UNNAMED"})
+    public PineClient newClient() {
+        PineClient client = new PineClient(library(), PineEnums.TargetPlatform.PS2);
+        client.close();
+        return client;
+    }
+
+    private Path library() {
+        if (library.isEmpty()) {
+            throw new IllegalStateException("Give the path of the pine_c library with -p library=<path>");
+        }
+        return Path.of(library);
+    }
+}
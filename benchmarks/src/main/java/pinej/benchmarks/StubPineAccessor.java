@@ -0,0 +1,110 @@
+package pinej.benchmarks;
+
+import pinej.PineAccessor;
+import jdk.incubator.foreign.MemoryAddress;
+
+/**
+ * Accessor which answers every call immediately without any IPC, for measuring the overhead of the client itself.
+ * Reads return the address, strings are constants and no call allocates.
+ */
+public class StubPineAccessor implements PineAccessor {
+    private static final MemoryAddress IPC = MemoryAddress.ofLong(1);
+    private static final MemoryAddress STRING = MemoryAddress.ofLong(2);
+
+    @Override
+    public MemoryAddress allocatePS2() {
+        return IPC;
+    }
+
+    @Override
+    public MemoryAddress allocatePS3() {
+        return IPC;
+    }
+
+    @Override
+    public void initializeBatch(MemoryAddress ipc) { }
+
+    @Override
+    public void freeDataStream(MemoryAddress ipc) { }
+
+    @Override
+    public int finalizeBatch(MemoryAddress ipc) {
+        return 1;
+    }
+
+    @Override
+    public long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
+        return place;
+    }
+
+    @Override
+    public MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        return STRING;
+    }
+
+    @Override
+    public void sendCommand(MemoryAddress ipc, int command) { }
+
+    @Override
+    public long read(MemoryAddress ipc, int address, byte command, byte batch) {
+        return address;
+    }
+
+    @Override
+    public MemoryAddress version(MemoryAddress ipc, byte batch) {
+        return STRING;
+    }
+
+    @Override
+    public int emuStatus(MemoryAddress ipc, byte batch) {
+        return 0;
+    }
+
+    @Override
+    public MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
+        return STRING;
+    }
+
+    @Override
+    public MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
+        return STRING;
+    }
+
+    @Override
+    public MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
+        return STRING;
+    }
+
+    @Override
+    public MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
+        return STRING;
+    }
+
+    @Override
+    public void saveState(MemoryAddress ipc, byte slot, byte batch) { }
+
+    @Override
+    public void loadState(MemoryAddress ipc, byte slot, byte batch) { }
+
+    @Override
+    public void write(MemoryAddress ipc, int address, long value, byte command, byte batch) { }
+
+    @Override
+    public void deletePS2(MemoryAddress ipc) { }
+
+    @Override
+    public void deletePS3(MemoryAddress ipc) { }
+
+    @Override
+    public void freeBatchCommand(int cmd) { }
+
+    @Override
+    public int getError(MemoryAddress ipc) {
+        return 0;
+    }
+
+    @Override
+    public String toJavaString(MemoryAddress address) {
+        return "STUB";
+    }
+}
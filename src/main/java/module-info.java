@@ -1,5 +1,7 @@
 module pinej {
     exports pinej;
+    exports pinej.testing;
 
     requires jdk.incubator.foreign;
-}
\ No newline at end of file
+    requires jdk.jfr;
+}
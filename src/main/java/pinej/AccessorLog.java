@@ -0,0 +1,340 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary log of accessor calls written by {@link RecordingPineAccessor} and read by {@link ReplayPineAccessor}.
+ * <p>
+ * After a header, every call is stored as its operation byte, the nanoseconds since the previous call, its arguments
+ * and its result. Numbers are zigzag varints, IPC structures are numbered in the order they are first seen and
+ * returned strings are stored as flags whose contents follow in the {@code toJavaString} call converting them.
+ */
+final class AccessorLog {
+    static final int MAGIC = 0x4352504A;
+    static final int VERSION = 1;
+
+    static final byte ALLOCATE_PS2 = 1;
+    static final byte ALLOCATE_PS3 = 2;
+    static final byte ALLOCATE = 3;
+    static final byte INITIALIZE_BATCH = 4;
+    static final byte FREE_DATA_STREAM = 5;
+    static final byte FINALIZE_BATCH = 6;
+    static final byte GET_REPLY = 7;
+    static final byte GET_REPLY_STRING = 8;
+    static final byte SEND_COMMAND = 9;
+    static final byte READ = 10;
+    static final byte VERSION_STRING = 11;
+    static final byte EMU_STATUS = 12;
+    static final byte GAME_TITLE = 13;
+    static final byte GAME_ID = 14;
+    static final byte GAME_UUID = 15;
+    static final byte GAME_VERSION = 16;
+    static final byte SAVE_STATE = 17;
+    static final byte LOAD_STATE = 18;
+    static final byte WRITE = 19;
+    static final byte DELETE_PS2 = 20;
+    static final byte DELETE_PS3 = 21;
+    static final byte FREE_BATCH_COMMAND = 22;
+    static final byte GET_ERROR = 23;
+    static final byte TO_JAVA_STRING = 24;
+
+    private static final String[] NAMES = {
+            "", "allocatePS2", "allocatePS3", "allocate", "initializeBatch", "freeDataStream", "finalizeBatch",
+            "getReply", "getReplyString", "sendCommand", "read", "version", "emuStatus", "getGameTitle", "getGameId",
+            "getGameUuid", "getGameVersion", "saveState", "loadState", "write", "deletePS2", "deletePS3",
+            "freeBatchCommand", "getError", "toJavaString"
+    };
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Longest call record without a string: operation, time, IPC and four varint arguments or results.
+     */
+    private static final int MAX_RECORD = 1 + 6 * 10;
+
+    private AccessorLog() { }
+
+    private static String name(byte operation) {
+        return operation > 0 && operation < NAMES.length ? NAMES[operation] : "unknown operation " + operation;
+    }
+
+    /**
+     * Appends calls to a log file through a heap buffer.
+     */
+    static final class Writer implements AutoCloseable {
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private final Map<Long, Integer> ipcs = new HashMap<>();
+
+        private long lastNanos = System.nanoTime();
+
+        private long lastIpc;
+
+        private int lastIpcId;
+
+        Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+
+        /**
+         * Starts the record of a call which began at the given time.
+         */
+        Writer begin(byte operation, long startNanos) {
+            if (buffer.remaining() < MAX_RECORD) {
+                flush();
+            }
+            buffer.put(operation);
+            putVarLong(Math.max(0, startNanos - lastNanos));
+            lastNanos = startNanos;
+            return this;
+        }
+
+        Writer ipc(MemoryAddress ipc) {
+            long raw = ipc.toRawLongValue();
+            if (lastIpcId == 0 || raw != lastIpc) {
+                lastIpc = raw;
+                lastIpcId = ipcs.computeIfAbsent(raw, k -> ipcs.size() + 1);
+            }
+            return putVarLong(lastIpcId);
+        }
+
+        Writer putByte(byte value) {
+            buffer.put(value);
+            return this;
+        }
+
+        Writer putInt(int value) {
+            return putVarLong(value);
+        }
+
+        Writer putLong(long value) {
+            return putVarLong(value);
+        }
+
+        Writer putString(MemoryAddress address) {
+            buffer.put((byte) (address == null || address.equals(MemoryAddress.NULL) ? 0 : 1));
+            return this;
+        }
+
+        Writer putString(String value) {
+            if (value == null) {
+                putVarLong(-1);
+                return this;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarLong(bytes.length);
+            if (buffer.remaining() < bytes.length) {
+                flush();
+            }
+            if (buffer.remaining() < bytes.length) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+            return this;
+        }
+
+        void flush() {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private Writer putVarLong(long value) {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buffer.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buffer.put((byte) v);
+            return this;
+        }
+
+        private void write(ByteBuffer src) {
+            try {
+                while (src.hasRemaining()) {
+                    channel.write(src);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads calls from a log file through a heap buffer, checking that they match the calls being replayed.
+     */
+    static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private long call;
+
+        private long recordedNanos;
+
+        private boolean eof;
+
+        Reader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.limit(0);
+            try {
+                fill(8);
+                if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                    throw new IOException("Not an accessor log: " + file);
+                }
+                if (buffer.getInt() != VERSION) {
+                    throw new IOException("Unsupported accessor log version in " + file);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Starts reading the record of the next call.
+         *
+         * @return Nanoseconds from the start of the recording to the start of the call.
+         * @throws IllegalStateException if the log has ended or the next call is a different operation. The recorded
+         * call is not consumed then.
+         */
+        long begin(byte operation) {
+            fill(MAX_RECORD);
+            if (!buffer.hasRemaining()) {
+                throw new IllegalStateException("Replay log ended after " + call + " calls");
+            }
+            byte recorded = buffer.get(buffer.position());
+            if (recorded != operation) {
+                throw diverged(name(recorded), name(operation));
+            }
+            buffer.get();
+            call++;
+            recordedNanos += getLong();
+            return recordedNanos;
+        }
+
+        void expectIpc(MemoryAddress ipc) {
+            long recorded = getLong();
+            if (recorded != ipc.toRawLongValue()) {
+                throw diverged("IPC " + recorded, "IPC " + ipc.toRawLongValue());
+            }
+        }
+
+        void expectByte(byte value) {
+            byte recorded = buffer.get();
+            if (recorded != value) {
+                throw diverged(recorded, value);
+            }
+        }
+
+        void expectInt(int value) {
+            expectLong(value);
+        }
+
+        void expectLong(long value) {
+            long recorded = getLong();
+            if (recorded != value) {
+                throw diverged(recorded, value);
+            }
+        }
+
+        byte getByte() {
+            return buffer.get();
+        }
+
+        int getInt() {
+            return (int) getLong();
+        }
+
+        long getLong() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        /**
+         * @return String handle recorded for a call: null pointer or an opaque non-null handle.
+         */
+        MemoryAddress getStringHandle() {
+            return buffer.get() == 0 ? MemoryAddress.NULL : MemoryAddress.ofLong(1);
+        }
+
+        String getString() {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            int done = 0;
+            while (done < length) {
+                fill(1);
+                if (!buffer.hasRemaining()) {
+                    throw new IllegalStateException("Replay log is truncated");
+                }
+                int chunk = Math.min(buffer.remaining(), length - done);
+                buffer.get(bytes, done, chunk);
+                done += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void fill(int needed) {
+            if (buffer.remaining() >= needed || eof) {
+                return;
+            }
+            buffer.compact();
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                buffer.flip();
+            }
+        }
+
+        private IllegalStateException diverged(Object recorded, Object actual) {
+            return new IllegalStateException("Replay diverged at call %d: recorded %s, got %s"
+                    .formatted(call, recorded, actual));
+        }
+    }
+}
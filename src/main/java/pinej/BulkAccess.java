@@ -0,0 +1,351 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits memory ranges into the widest aligned read and write commands and transfers them in as few batches as possible.
+ */
+final class BulkAccess {
+    /**
+     * Reply payload per batch, kept well below the maximum reply size of the protocol.
+     */
+    static final int BATCH_BYTES = 256 * 1024;
+
+    /**
+     * Maximum number of scalar commands per batch. Even with 64-bit reads the reply stays within {@link #BATCH_BYTES}.
+     */
+    static final int BATCH_COMMANDS = BATCH_BYTES / Long.BYTES;
+
+    private static final byte BATCH = (byte) 1;
+
+    private BulkAccess() { }
+
+    /**
+     * Reads {@code dst.remaining()} bytes starting from the address into the buffer, which must be in the byte order of
+     * the target platform. The position of the buffer is advanced by the number of bytes read.
+     */
+    static void read(PineClient client, int address, ByteBuffer dst) {
+        Reads reads = new Reads(client);
+        reads.read(address, dst, dst.position(), dst.remaining());
+        reads.finish();
+        dst.position(dst.limit());
+    }
+
+    /**
+     * Reads the scalar addresses with the given read commands into the values array, sign extending the replies.
+     */
+    static void read(PineClient client, int[] addresses, byte[] commands, long[] values, int count) {
+        PineAccessor accessor = client.accessor();
+        MemoryAddress ipc = client.ipc();
+        for (int start = 0; start < count; start += BATCH_COMMANDS) {
+            int end = Math.min(count, start + BATCH_COMMANDS);
+            accessor.initializeBatch(ipc);
+            for (int i = start; i < end; i++) {
+                accessor.read(ipc, addresses[i], commands[i], BATCH);
+            }
+            int cmd = accessor.finalizeBatch(ipc);
+            try {
+                accessor.sendCommand(ipc, cmd);
+                client.checkError("BatchRead");
+                for (int i = start; i < end; i++) {
+                    values[i] = signExtend(accessor.getReply(ipc, cmd, i - start, commands[i]), commands[i]);
+                }
+            } finally {
+                accessor.freeBatchCommand(cmd);
+            }
+        }
+    }
+
+    static long signExtend(long value, byte command) {
+        return switch (command) {
+            case 0 -> (byte) value;
+            case 1 -> (short) value;
+            case 2 -> (int) value;
+            default -> value;
+        };
+    }
+
+    /**
+     * Finalizes and frees a batch without sending it, so the accessor lets other threads initialize batches again.
+     * Failures are added to the given exception, which the caller rethrows.
+     */
+    static void discardBatch(PineAccessor accessor, MemoryAddress ipc, RuntimeException failure) {
+        try {
+            accessor.freeBatchCommand(accessor.finalizeBatch(ipc));
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return Width in bytes of a read or write command.
+     */
+    static int commandWidth(byte command) {
+        return switch (command & 3) {
+            case 0 -> 1;
+            case 1 -> 2;
+            case 2 -> 4;
+            default -> 8;
+        };
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer, which must be in the byte order of the target platform, to memory
+     * starting at the address. The position of the buffer is advanced by the number of bytes written.
+     */
+    static void write(PineClient client, int address, ByteBuffer src) {
+        Writes writes = new Writes(client);
+        writes.write(address, src, src.position(), src.remaining());
+        writes.finish();
+        src.position(src.limit());
+    }
+
+    /**
+     * @return Width of the widest command that is aligned at the address and fits in the remaining length.
+     */
+    static int width(int address, int remaining) {
+        if ((address & 7) == 0 && remaining >= 8) {
+            return 8;
+        } else if ((address & 3) == 0 && remaining >= 4) {
+            return 4;
+        } else if ((address & 1) == 0 && remaining >= 2) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static byte writeCommand(int width) {
+        return switch (width) {
+            case 8 -> PineEnums.Command.WRITE_64.toByte();
+            case 4 -> PineEnums.Command.WRITE_32.toByte();
+            case 2 -> PineEnums.Command.WRITE_16.toByte();
+            default -> PineEnums.Command.WRITE_8.toByte();
+        };
+    }
+
+    private static byte readCommand(int width) {
+        return switch (width) {
+            case 8 -> PineEnums.Command.READ_64.toByte();
+            case 4 -> PineEnums.Command.READ_32.toByte();
+            case 2 -> PineEnums.Command.READ_16.toByte();
+            default -> PineEnums.Command.READ_8.toByte();
+        };
+    }
+
+    /**
+     * Queues write commands into batches, sending a batch whenever it reaches the size or command limit.
+     */
+    static final class Writes {
+        private static final int INITIAL_RANGES = 16;
+
+        private final PineClient client;
+        private final PineAccessor accessor;
+        private final MemoryAddress ipc;
+
+        private int queuedBytes;
+        private int queued;
+        private boolean open;
+
+        // Ranges written by the queued commands, dropped from the read cache once the batch has been sent.
+        private int[] rangeAddresses = new int[INITIAL_RANGES];
+        private int[] rangeLengths = new int[INITIAL_RANGES];
+        private int ranges;
+
+        Writes(PineClient client) {
+            this.client = client;
+            this.accessor = client.accessor();
+            this.ipc = client.ipc();
+        }
+
+        /**
+         * Queues writes for {@code length} bytes of the buffer starting from the absolute offset.
+         */
+        void write(int address, ByteBuffer src, int offset, int length) {
+            for (int done = 0; done < length; ) {
+                int width = width(address + done, length - done);
+                long value = switch (width) {
+                    case 8 -> src.getLong(offset + done);
+                    case 4 -> src.getInt(offset + done);
+                    case 2 -> src.getShort(offset + done);
+                    default -> src.get(offset + done);
+                };
+                write(address + done, value, width);
+                done += width;
+            }
+        }
+
+        void write(int address, long value, int width) {
+            if (queued == BATCH_COMMANDS || queuedBytes + width > BATCH_BYTES) {
+                finish();
+            }
+            if (!open) {
+                accessor.initializeBatch(ipc);
+                open = true;
+            }
+            try {
+                accessor.write(ipc, address, value, writeCommand(width), BATCH);
+            } catch (RuntimeException e) {
+                // The batch is left in an unknown state, so it is discarded and the next write starts a new one.
+                reset();
+                ranges = 0;
+                discardBatch(accessor, ipc, e);
+                throw e;
+            }
+            addRange(address, width);
+            queuedBytes += width;
+            queued++;
+        }
+
+        /**
+         * Sends the commands queued so far.
+         *
+         * @throws IllegalStateException if the emulator reports an error.
+         */
+        void finish() {
+            if (!open) {
+                return;
+            }
+            int cmd;
+            try {
+                cmd = accessor.finalizeBatch(ipc);
+            } catch (RuntimeException e) {
+                ranges = 0;
+                throw e;
+            } finally {
+                reset();
+            }
+            try {
+                accessor.sendCommand(ipc, cmd);
+                client.checkError("BulkWrite");
+            } finally {
+                accessor.freeBatchCommand(cmd);
+                // Also after a failure, as the emulator may have applied part of the batch.
+                for (int i = 0; i < ranges; i++) {
+                    client.invalidate(rangeAddresses[i], rangeLengths[i]);
+                }
+                ranges = 0;
+            }
+        }
+
+        private void addRange(int address, int width) {
+            if (ranges > 0 && rangeAddresses[ranges - 1] + rangeLengths[ranges - 1] == address) {
+                rangeLengths[ranges - 1] += width;
+                return;
+            }
+            if (ranges == rangeAddresses.length) {
+                rangeAddresses = Arrays.copyOf(rangeAddresses, ranges * 2);
+                rangeLengths = Arrays.copyOf(rangeLengths, ranges * 2);
+            }
+            rangeAddresses[ranges] = address;
+            rangeLengths[ranges] = width;
+            ranges++;
+        }
+
+        private void reset() {
+            open = false;
+            queuedBytes = 0;
+            queued = 0;
+        }
+    }
+
+    /**
+     * Queues read commands for memory ranges into batches and stores the replies into a buffer, sending a batch
+     * whenever it reaches the size limit. Can be reused after {@link #finish()}.
+     */
+    static final class Reads {
+        private static final int INITIAL_COMMANDS = 64;
+
+        private final PineClient client;
+        private final PineAccessor accessor;
+        private final MemoryAddress ipc;
+
+        private int[] offsets = new int[INITIAL_COMMANDS];
+        private byte[] widths = new byte[INITIAL_COMMANDS];
+        private ByteBuffer dst;
+        private int count;
+        private int queuedBytes;
+
+        Reads(PineClient client) {
+            this.client = client;
+            this.accessor = client.accessor();
+            this.ipc = client.ipc();
+        }
+
+        /**
+         * Queues reads of {@code length} bytes from the address into the buffer starting from the absolute offset. The
+         * buffer must be in the byte order of the target platform.
+         */
+        void read(int address, ByteBuffer dst, int offset, int length) {
+            if (this.dst != dst) {
+                finish();
+                this.dst = dst;
+            }
+            for (int done = 0; done < length; ) {
+                int width = width(address + done, length - done);
+                if (count == BATCH_COMMANDS || queuedBytes + width > BATCH_BYTES) {
+                    finish();
+                    this.dst = dst;
+                }
+                if (count == 0) {
+                    accessor.initializeBatch(ipc);
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                    widths = Arrays.copyOf(widths, count * 2);
+                }
+                try {
+                    accessor.read(ipc, address + done, readCommand(width), BATCH);
+                } catch (RuntimeException e) {
+                    // The batch is left in an unknown state, so it is discarded and the next read starts a new one.
+                    count = 0;
+                    queuedBytes = 0;
+                    this.dst = null;
+                    discardBatch(accessor, ipc, e);
+                    throw e;
+                }
+                offsets[count] = offset + done;
+                widths[count] = (byte) width;
+                count++;
+                queuedBytes += width;
+                done += width;
+            }
+        }
+
+        /**
+         * Sends the commands queued so far and stores the replies.
+         *
+         * @throws IllegalStateException if the emulator reports an error.
+         */
+        void finish() {
+            if (count == 0) {
+                dst = null;
+                return;
+            }
+            int queued = count;
+            ByteBuffer buffer = dst;
+            count = 0;
+            queuedBytes = 0;
+            dst = null;
+            int cmd = accessor.finalizeBatch(ipc);
+            try {
+                accessor.sendCommand(ipc, cmd);
+                client.checkError("BulkRead");
+                for (int place = 0; place < queued; place++) {
+                    long value = accessor.getReply(ipc, cmd, place, readCommand(widths[place]));
+                    int offset = offsets[place];
+                    switch (widths[place]) {
+                        case 8 -> buffer.putLong(offset, value);
+                        case 4 -> buffer.putInt(offset, (int) value);
+                        case 2 -> buffer.putShort(offset, (short) value);
+                        default -> buffer.put(offset, (byte) value);
+                    }
+                }
+            } finally {
+                accessor.freeBatchCommand(cmd);
+            }
+        }
+    }
+}
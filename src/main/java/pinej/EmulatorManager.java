@@ -0,0 +1,351 @@
+package pinej;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Manager for clients of multiple emulator instances running side by side in their own slots.
+ * <p>
+ * All clients share the accessor given to the manager, so the native library is loaded and linked once. Polling is
+ * scheduled on a bounded pool of daemon threads: every instance is polled with a fixed delay, the instances are
+ * staggered over the period and a slow instance never runs more than one poll at a time. Every poll first checks
+ * the status of the emulator and runs the task only for running or paused instances. Shut down instances are idle and
+ * not counted as failing. Instances failing repeatedly are polled less and less often, down to once every
+ * {@value #MAX_BACKOFF} periods. A client is closed only once no poll of its instance is running.
+ */
+public class EmulatorManager implements AutoCloseable {
+    private static final int MAX_BACKOFF = 32;
+
+    private final PineAccessor accessor;
+
+    private final int workers;
+
+    private final int failureThreshold;
+
+    private final List<Instance> instances = new CopyOnWriteArrayList<>();
+
+    private final LongAdder polls = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private Duration period;
+
+    private PollTask task;
+
+    private long reportNanos = System.nanoTime();
+
+    private long reportPolls;
+
+    /**
+     * @param accessor Accessor shared by the clients of all instances.
+     * @param workers Maximum number of instances polled concurrently.
+     */
+    public EmulatorManager(PineAccessor accessor, int workers) {
+        this(accessor, workers, 3);
+    }
+
+    /**
+     * @param accessor Accessor shared by the clients of all instances.
+     * @param workers Maximum number of instances polled concurrently.
+     * @param failureThreshold Number of consecutive failed polls after which an instance is considered down.
+     */
+    public EmulatorManager(PineAccessor accessor, int workers, int failureThreshold) {
+        if (workers <= 0 || failureThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid workers %d or failure threshold %d"
+                    .formatted(workers, failureThreshold));
+        }
+        this.accessor = accessor;
+        this.workers = workers;
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Creates a client for the emulator in the given slot. If polling has been started, the instance is polled too.
+     *
+     * @param name Name of the instance in reports.
+     * @throws UnsupportedOperationException if the accessor can not connect to the slot.
+     */
+    public synchronized Instance connect(String name, PineEnums.TargetPlatform platform, int slot) {
+        Instance instance = new Instance(name, platform, slot, new PineClient(accessor, platform, slot));
+        instances.add(instance);
+        if (executor != null) {
+            instance.schedule(0);
+        }
+        return instance;
+    }
+
+    public List<Instance> instances() {
+        return List.copyOf(instances);
+    }
+
+    /**
+     * Starts polling every instance with the task.
+     *
+     * @param period Delay between the end of a poll and the start of the next poll of the same instance.
+     */
+    public synchronized void start(Duration period, PollTask task) {
+        if (executor != null) {
+            throw new IllegalStateException("Manager is already running");
+        }
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(workers, r -> {
+            Thread thread = new Thread(r, "EmulatorManager-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.period = period;
+        this.task = task;
+        int count = instances.size();
+        for (int i = 0; i < count; i++) {
+            instances.get(i).schedule(period.toNanos() * i / count);
+        }
+    }
+
+    /**
+     * Stops polling and waits for running polls to finish. Clients stay connected.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(period.toNanos() + TimeUnit.SECONDS.toNanos(5), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        for (Instance instance : instances) {
+            instance.future = null;
+        }
+    }
+
+    /**
+     * @return Health of every instance and the number of polls per second since the previous report.
+     */
+    public synchronized Report report() {
+        List<InstanceHealth> health = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            health.add(instance.health());
+        }
+        long now = System.nanoTime();
+        long total = polls.sum();
+        double seconds = (now - reportNanos) / 1e9;
+        double rate = seconds > 0 ? (total - reportPolls) / seconds : 0;
+        reportNanos = now;
+        reportPolls = total;
+        return new Report(health, total, failures.sum(), rate);
+    }
+
+    /**
+     * Stops polling and closes the clients of all instances. Polls still running after the timeout of {@link #stop()}
+     * are waited for before their client is closed.
+     */
+    @Override
+    public synchronized void close() {
+        stop();
+        for (Instance instance : instances) {
+            instance.closeClient();
+        }
+        instances.clear();
+    }
+
+    /**
+     * Work done for an instance on every poll.
+     */
+    @FunctionalInterface
+    public interface PollTask {
+        /**
+         * @throws RuntimeException to count the poll as failed.
+         */
+        void poll(Instance instance);
+    }
+
+    public enum Health {
+        /**
+         * Latest poll succeeded or found the emulator shut down.
+         */
+        HEALTHY,
+        /**
+         * Latest polls failed, but less than the failure threshold in a row.
+         */
+        DEGRADED,
+        /**
+         * Polls have failed at least the failure threshold in a row.
+         */
+        DOWN
+    }
+
+    /**
+     * @param status Status reported by the emulator on the latest poll, or null before the first poll.
+     * @param lastLatency Duration of the latest poll.
+     * @param lastSuccess Time of the latest successful poll, or null if there has been none.
+     * @param lastError Error thrown by the latest failed poll, or null if the emulator just reported an error status.
+     */
+    public record InstanceHealth(String name, PineEnums.TargetPlatform platform, int slot, Health health,
+                                 PineEnums.Status status, long polls, long failures, int consecutiveFailures,
+                                 Duration lastLatency, Instant lastSuccess, RuntimeException lastError) { }
+
+    /**
+     * @param polls Polls made since the manager was created.
+     * @param failures Failed polls since the manager was created.
+     * @param pollsPerSecond Polls per second since the previous report.
+     */
+    public record Report(List<InstanceHealth> instances, long polls, long failures, double pollsPerSecond) { }
+
+    /**
+     * Emulator instance managed by this manager.
+     */
+    public class Instance {
+        private final String name;
+
+        private final PineEnums.TargetPlatform platform;
+
+        private final int slot;
+
+        private final PineClient client;
+
+        private final ReentrantLock pollLock = new ReentrantLock();
+
+        private volatile PineEnums.Status status;
+        private volatile long pollCount;
+        private volatile long failureCount;
+        private volatile int consecutiveFailures;
+        private volatile long lastLatency;
+        private volatile Instant lastSuccess;
+        private volatile RuntimeException lastError;
+
+        private int skipped;
+
+        private boolean closed;
+
+        private ScheduledFuture<?> future;
+
+        private Instance(String name, PineEnums.TargetPlatform platform, int slot, PineClient client) {
+            this.name = name;
+            this.platform = platform;
+            this.slot = slot;
+            this.client = client;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public PineEnums.TargetPlatform platform() {
+            return platform;
+        }
+
+        public int slot() {
+            return slot;
+        }
+
+        public PineClient client() {
+            return client;
+        }
+
+        public InstanceHealth health() {
+            int consecutive = consecutiveFailures;
+            Health health = consecutive == 0 ? Health.HEALTHY
+                    : consecutive < failureThreshold ? Health.DEGRADED : Health.DOWN;
+            return new InstanceHealth(name, platform, slot, health, status, pollCount, failureCount, consecutive,
+                    Duration.ofNanos(lastLatency), lastSuccess, lastError);
+        }
+
+        /**
+         * Stops polling the instance and closes its client, after waiting for a running poll to finish.
+         */
+        public void remove() {
+            synchronized (EmulatorManager.this) {
+                if (!instances.remove(this)) {
+                    return;
+                }
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+            closeClient();
+        }
+
+        private void closeClient() {
+            pollLock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    client.close();
+                }
+            } finally {
+                pollLock.unlock();
+            }
+        }
+
+        private void schedule(long initialDelay) {
+            future = executor.scheduleWithFixedDelay(this::poll, initialDelay, period.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private void poll() {
+            pollLock.lock();
+            try {
+                if (!closed) {
+                    pollClient();
+                }
+            } finally {
+                pollLock.unlock();
+            }
+        }
+
+        private void pollClient() {
+            int consecutive = consecutiveFailures;
+            if (consecutive >= failureThreshold) {
+                int backoff = Math.min(MAX_BACKOFF, 1 << Math.min(consecutive - failureThreshold + 1, 5));
+                if (++skipped < backoff) {
+                    return;
+                }
+            }
+            skipped = 0;
+            long start = System.nanoTime();
+            try {
+                PineEnums.Status current = client.getStatus();
+                status = current;
+                if (current == PineEnums.Status.RUNNING || current == PineEnums.Status.PAUSED) {
+                    task.poll(this);
+                    succeeded();
+                } else if (current == PineEnums.Status.SHUTDOWN) {
+                    consecutiveFailures = 0;
+                } else {
+                    failed(null);
+                }
+            } catch (RuntimeException e) {
+                failed(e);
+            } finally {
+                lastLatency = System.nanoTime() - start;
+                pollCount++;
+                polls.increment();
+            }
+        }
+
+        private void succeeded() {
+            consecutiveFailures = 0;
+            lastSuccess = Instant.now();
+        }
+
+        private void failed(RuntimeException error) {
+            consecutiveFailures++;
+            failureCount++;
+            failures.increment();
+            lastError = error;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package pinej;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Runs a poll once per emulated frame, locked onto a frame counter in memory or onto the status of the emulator.
+ * <p>
+ * With a frame counter, the scheduler learns the frame period from how fast the counter advances, sleeps until
+ * shortly before the next frame is due and then reads the counter every {@value #PROBES_PER_FRAME}th of a period
+ * until it changes, so a frame costs a few counter reads besides the poll. Frames the counter advanced past between
+ * two reads are counted as missed. When the counter stops advancing for {@value #STALL_FRAMES} periods, the status is
+ * checked. Without a counter, the status is checked before every poll and polls run at the nominal frame rate.
+ * <p>
+ * While the emulator is paused, shut down or failing, only the status is checked, with a delay doubling up to
+ * {@value #MAX_BACKOFF_MILLIS} ms. A task throwing an exception does not change this, the next frame is polled as usual.
+ * Closing waits for a running poll to finish, so the task is not called after {@link #close()} returns. The client must
+ * not be used from other threads while the scheduler is running.
+ */
+public class FrameScheduler implements AutoCloseable {
+    private static final int PROBES_PER_FRAME = 16;
+
+    private static final int STALL_FRAMES = 4;
+
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(MAX_BACKOFF_MILLIS);
+
+    /**
+     * Largest counter step taken as frames advanced, larger ones are taken as the counter being reset.
+     */
+    private static final long MAX_ADVANCE = 1 << 16;
+
+    private final PineClient client;
+
+    private final boolean counter;
+
+    private final int counterAddress;
+
+    private final long nominalPeriod;
+
+    private final FrameTask task;
+
+    private final ReentrantLock stepLock = new ReentrantLock();
+
+    private volatile long period;
+
+    private boolean running;
+
+    private boolean locked;
+
+    private int lastCounter;
+
+    private long lastFrameNanos;
+
+    private long ticks;
+
+    private long backoff;
+
+    private volatile PineEnums.Status status;
+
+    private final LongAdder framesObserved = new LongAdder();
+
+    private final LongAdder framesPolled = new LongAdder();
+
+    private final LongAdder framesMissed = new LongAdder();
+
+    private final LongAdder taskFailures = new LongAdder();
+
+    private final LongAdder probes = new LongAdder();
+
+    private final LongAdder statusChecks = new LongAdder();
+
+    private final LongAdder latencyTotal = new LongAdder();
+
+    private final AtomicLong latencyMax = new AtomicLong();
+
+    private volatile Consumer<RuntimeException> errorHandler = e -> { };
+
+    private ScheduledExecutorService scheduler;
+
+    FrameScheduler(PineClient client, boolean counter, int counterAddress, Duration nominalPeriod, FrameTask task) {
+        if (nominalPeriod.isNegative() || nominalPeriod.isZero()) {
+            throw new IllegalArgumentException("Frame period must be positive: " + nominalPeriod);
+        }
+        this.client = client;
+        this.counter = counter;
+        this.counterAddress = counterAddress;
+        this.nominalPeriod = nominalPeriod.toNanos();
+        this.period = this.nominalPeriod;
+        this.task = task;
+    }
+
+    /**
+     * Sets the handler for errors thrown while polling. By default they are ignored. After an error of the task,
+     * polling continues with the next frame. After an error reading the status or the frame counter, polling continues
+     * as if the emulator was not running.
+     */
+    public void setErrorHandler(Consumer<RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Starts polling on a dedicated daemon thread.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("Scheduler is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FrameScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService executor = scheduler;
+        executor.execute(() -> run(executor));
+    }
+
+    /**
+     * @return Statistics since the scheduler was created or the statistics were reset. The counters keep running while
+     * the snapshot is taken.
+     */
+    public Stats stats() {
+        long polled = framesPolled.sum();
+        return new Stats(status, framesObserved.sum(), polled, framesMissed.sum(), taskFailures.sum(), probes.sum(),
+                statusChecks.sum(), Duration.ofNanos(period),
+                Duration.ofNanos(polled == 0 ? 0 : latencyTotal.sum() / polled),
+                Duration.ofNanos(latencyMax.get()));
+    }
+
+    public void resetStats() {
+        framesObserved.reset();
+        framesPolled.reset();
+        framesMissed.reset();
+        taskFailures.reset();
+        probes.reset();
+        statusChecks.reset();
+        latencyTotal.reset();
+        latencyMax.set(0);
+    }
+
+    /**
+     * Stops polling and waits for a running poll to finish.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        // Does not deadlock with a step, as run releases the lock before entering the monitor.
+        stepLock.lock();
+        stepLock.unlock();
+    }
+
+    /**
+     * Runs one step and schedules the next one, unless the executor has been shut down meanwhile. Steps run under their
+     * own lock rather than the monitor, so the statistics do not wait for the emulator and {@link #close()} can wait
+     * for the running step.
+     */
+    private void run(ScheduledExecutorService executor) {
+        long delay;
+        stepLock.lock();
+        try {
+            if (executor.isShutdown()) {
+                return;
+            }
+            try {
+                delay = step();
+            } catch (RuntimeException e) {
+                delay = backOff();
+                errorHandler.accept(e);
+            }
+        } finally {
+            stepLock.unlock();
+        }
+        synchronized (this) {
+            if (scheduler == executor && !executor.isShutdown()) {
+                executor.schedule(() -> run(executor), delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * @return Nanoseconds until the next step.
+     */
+    private long step() {
+        if (!counter) {
+            return tick();
+        }
+        if (!running) {
+            return checkStatus();
+        }
+        probes.increment();
+        int value = client.readInt(counterAddress);
+        long now = System.nanoTime();
+        if (!locked || value != lastCounter) {
+            long advanced = Integer.toUnsignedLong(value - lastCounter);
+            if (!locked) {
+                // The emulator may run at a different speed after a pause, so the period is learned again.
+                advanced = 1;
+                period = nominalPeriod;
+            } else if (advanced > MAX_ADVANCE) {
+                advanced = 1;
+            } else {
+                long measured = Math.min((now - lastFrameNanos) / advanced, STALL_FRAMES * period);
+                period += (measured - period) / 8;
+            }
+            framesObserved.add(advanced);
+            framesMissed.add(advanced - 1);
+            locked = true;
+            lastCounter = value;
+            lastFrameNanos = now;
+            poll(Integer.toUnsignedLong(value));
+            long probeInterval = period / PROBES_PER_FRAME;
+            return Math.max(0, lastFrameNanos + period - probeInterval - System.nanoTime());
+        }
+        if (now - lastFrameNanos > STALL_FRAMES * period) {
+            return checkStatus();
+        }
+        return period / PROBES_PER_FRAME;
+    }
+
+    /**
+     * Polls at the nominal frame rate while the status is running, counting elapsed periods as frames.
+     */
+    private long tick() {
+        statusChecks.increment();
+        status = client.getStatus();
+        if (status != PineEnums.Status.RUNNING) {
+            return backOff();
+        }
+        long now = System.nanoTime();
+        long frames = 1;
+        if (running) {
+            frames = Math.max(1, (now - lastFrameNanos + nominalPeriod / 2) / nominalPeriod);
+        }
+        running = true;
+        backoff = 0;
+        framesObserved.add(frames);
+        framesMissed.add(frames - 1);
+        lastFrameNanos = now;
+        poll(++ticks);
+        return Math.max(0, now + nominalPeriod - System.nanoTime());
+    }
+
+    private long checkStatus() {
+        statusChecks.increment();
+        status = client.getStatus();
+        if (status != PineEnums.Status.RUNNING) {
+            return backOff();
+        }
+        running = true;
+        backoff = 0;
+        lastFrameNanos = System.nanoTime();
+        return 0;
+    }
+
+    private long backOff() {
+        running = false;
+        locked = false;
+        backoff = backoff == 0 ? period : Math.min(backoff * 2, MAX_BACKOFF);
+        return backoff;
+    }
+
+    /**
+     * Runs the task, passing its errors to the error handler so they do not count as the emulator failing.
+     */
+    private void poll(long frame) {
+        long start = System.nanoTime();
+        try {
+            task.poll(frame);
+        } catch (RuntimeException e) {
+            taskFailures.increment();
+            errorHandler.accept(e);
+        }
+        long latency = System.nanoTime() - start;
+        framesPolled.increment();
+        latencyTotal.add(latency);
+        latencyMax.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Work done once per frame, usually a batched poll such as {@link MemoryWatcher#poll()}.
+     */
+    @FunctionalInterface
+    public interface FrameTask {
+        /**
+         * @param frame Value of the frame counter, or without one the number of polls made.
+         */
+        void poll(long frame);
+    }
+
+    /**
+     * @param status Status reported by the latest status check, or null if there has been none.
+     * @param framesObserved Frames which passed while the emulator was running.
+     * @param framesPolled Frames for which the task was run.
+     * @param framesMissed Frames which passed without the task being run.
+     * @param taskFailures Polls in which the task threw an exception.
+     * @param probes Reads of the frame counter.
+     * @param statusChecks Status requests.
+     * @param framePeriod Estimated duration of a frame.
+     * @param meanLatency Mean duration of the task.
+     * @param maxLatency Longest duration of the task.
+     */
+    public record Stats(PineEnums.Status status, long framesObserved, long framesPolled, long framesMissed,
+                        long taskFailures, long probes, long statusChecks, Duration framePeriod, Duration meanLatency,
+                        Duration maxLatency) {
+        /**
+         * @return Fraction of the observed frames which were polled.
+         */
+        public double coverage() {
+            return framesObserved == 0 ? 0 : (double) framesPolled / framesObserved;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package pinej;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds memory addresses at frozen values by writing all of them again on every tick.
+ * <p>
+ * All frozen values are written in one batched request. With verification enabled, a tick first reads all frozen
+ * addresses in one batch and writes only the values the game has changed, which costs a second round trip when
+ * anything changed but leaves correct values untouched. Entries are kept in primitive arrays, so ticks do not
+ * allocate. The client must not be used from other threads while the freezer is running.
+ */
+public class MemoryFreezer implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final PineClient client;
+
+    private final BulkAccess.Writes writes;
+
+    private Freeze[] freezes = new Freeze[INITIAL_CAPACITY];
+    private int[] addresses = new int[INITIAL_CAPACITY];
+    private byte[] widths = new byte[INITIAL_CAPACITY];
+    private byte[] commands = new byte[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private long[] current = new long[INITIAL_CAPACITY];
+    private int count;
+
+    private boolean verify;
+
+    private int lastWrites;
+
+    private volatile Consumer<RuntimeException> errorHandler = e -> { };
+
+    private ScheduledExecutorService scheduler;
+
+    public MemoryFreezer(PineClient client) {
+        this.client = client;
+        this.writes = new BulkAccess.Writes(client);
+    }
+
+    public Freeze freeze(int address, byte value) {
+        return add(address, PineEnums.Command.READ_8, value);
+    }
+
+    public Freeze freeze(int address, short value) {
+        return add(address, PineEnums.Command.READ_16, value);
+    }
+
+    public Freeze freeze(int address, int value) {
+        return add(address, PineEnums.Command.READ_32, value);
+    }
+
+    public Freeze freeze(int address, long value) {
+        return add(address, PineEnums.Command.READ_64, value);
+    }
+
+    public Freeze freeze(int address, float value) {
+        return add(address, PineEnums.Command.READ_32, Float.floatToRawIntBits(value));
+    }
+
+    public Freeze freeze(int address, double value) {
+        return add(address, PineEnums.Command.READ_64, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @return Number of frozen entries.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Sets whether ticks read the frozen addresses first and write only the values which differ.
+     */
+    public synchronized void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    public synchronized boolean isVerify() {
+        return verify;
+    }
+
+    /**
+     * @return Number of values written by the latest tick.
+     */
+    public synchronized int lastWriteCount() {
+        return lastWrites;
+    }
+
+    /**
+     * Sets the handler for errors thrown by scheduled ticks. By default they are ignored and ticking continues.
+     */
+    public void setErrorHandler(Consumer<RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Starts ticking on a dedicated daemon thread.
+     *
+     * @param period Time between ticks.
+     */
+    public synchronized void start(Duration period) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Freezer is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MemoryFreezer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService executor = scheduler;
+        executor.scheduleAtFixedRate(() -> scheduledTick(executor), 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes all frozen values once, or with verification only the ones which differ.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public synchronized void tick() {
+        if (count == 0) {
+            lastWrites = 0;
+            return;
+        }
+        if (verify) {
+            BulkAccess.read(client, addresses, commands, current, count);
+        }
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            if (!verify || current[i] != values[i]) {
+                writes.write(addresses[i], values[i], widths[i]);
+                written++;
+            }
+        }
+        writes.finish();
+        lastWrites = written;
+    }
+
+    /**
+     * Stops ticking. A running tick finishes before this returns and no scheduled tick runs after it. Frozen entries are
+     * kept.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void scheduledTick(ScheduledExecutorService executor) {
+        try {
+            synchronized (this) {
+                // A tick which was waiting for the monitor while the freezer was closed is skipped.
+                if (scheduler != executor) {
+                    return;
+                }
+                tick();
+            }
+        } catch (RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    private synchronized Freeze add(int address, PineEnums.Command command, long value) {
+        if (count == freezes.length) {
+            int capacity = count * 2;
+            freezes = Arrays.copyOf(freezes, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            commands = Arrays.copyOf(commands, capacity);
+            values = Arrays.copyOf(values, capacity);
+            current = Arrays.copyOf(current, capacity);
+        }
+        Freeze freeze = new Freeze(address, command);
+        freeze.index = count;
+        freezes[count] = freeze;
+        addresses[count] = address;
+        widths[count] = (byte) widthOf(command);
+        commands[count] = command.toByte();
+        values[count] = BulkAccess.signExtend(value, command.toByte());
+        count++;
+        return freeze;
+    }
+
+    private synchronized void remove(Freeze freeze) {
+        int index = freeze.index;
+        if (index < 0) {
+            return;
+        }
+        int last = --count;
+        freezes[index] = freezes[last];
+        freezes[index].index = index;
+        addresses[index] = addresses[last];
+        widths[index] = widths[last];
+        commands[index] = commands[last];
+        values[index] = values[last];
+        freezes[last] = null;
+        freeze.index = -1;
+    }
+
+    private static int widthOf(PineEnums.Command command) {
+        return switch (command) {
+            case READ_8 -> 1;
+            case READ_16 -> 2;
+            case READ_32 -> 4;
+            default -> 8;
+        };
+    }
+
+    /**
+     * Address held at a value by the freezer.
+     */
+    public final class Freeze {
+        private final int address;
+
+        private final PineEnums.Command command;
+
+        private int index;
+
+        private Freeze(int address, PineEnums.Command command) {
+            this.address = address;
+            this.command = command;
+        }
+
+        public int address() {
+            return address;
+        }
+
+        /**
+         * @return Width of the frozen value in bytes.
+         */
+        public int width() {
+            return widthOf(command);
+        }
+
+        /**
+         * @return True until the freeze is cancelled.
+         */
+        public boolean isActive() {
+            synchronized (MemoryFreezer.this) {
+                return index >= 0;
+            }
+        }
+
+        /**
+         * @return Frozen value, sign extended for integers and as bits for floating point values.
+         * @throws IllegalStateException if the freeze has been cancelled.
+         */
+        public long rawValue() {
+            synchronized (MemoryFreezer.this) {
+                checkActive();
+                return values[index];
+            }
+        }
+
+        /**
+         * Changes the frozen value from the next tick on.
+         *
+         * @param value Value, or bits of a floating point value, truncated to the width of the freeze.
+         * @throws IllegalStateException if the freeze has been cancelled.
+         */
+        public void setRawValue(long value) {
+            synchronized (MemoryFreezer.this) {
+                checkActive();
+                values[index] = BulkAccess.signExtend(value, command.toByte());
+            }
+        }
+
+        /**
+         * Releases the address. It is not written after this method returns.
+         */
+        public void cancel() {
+            remove(this);
+        }
+
+        private void checkActive() {
+            if (index < 0) {
+                throw new IllegalStateException("Freeze has been cancelled");
+            }
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package pinej;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Incremental search for values in a region of emulator memory.
+ * <p>
+ * The first scan reads the whole region in large chunks into off-heap memory and filters every aligned value while
+ * the next chunk is being read. Candidates are kept as a bitset over the region until few enough remain, after which
+ * they are kept as arrays of addresses and values. Every following scan re-reads only the candidates: whole chunks
+ * while the bitset is used, batched scalar reads afterwards. Filtering runs on a {@link ForkJoinPool}.
+ * <p>
+ * Values are compared as signed integers or as floating point numbers, depending on the {@link ValueType}. Instances
+ * are not thread safe. If a scan fails, the candidates are undefined until {@link #reset()}.
+ */
+public class MemoryScanner implements AutoCloseable {
+    /**
+     * Start of the main RAM of the PS2 Emotion Engine.
+     */
+    public static final int EE_RAM_START = 0;
+
+    /**
+     * Size of the main RAM of the PS2 Emotion Engine.
+     */
+    public static final int EE_RAM_SIZE = 32 * 1024 * 1024;
+
+    private static final int CHUNK = BulkAccess.BATCH_BYTES;
+    private static final int SPARSE_TASK = 16 * 1024;
+
+    private final PineClient client;
+
+    private final ValueType type;
+
+    private final int start;
+
+    private final int slots;
+
+    private final ForkJoinPool pool;
+
+    private final BulkAccess.Reads reads;
+
+    private ResourceScope scope;
+    private MemorySegment previous;
+    private MemorySegment current;
+    private long[] bits;
+
+    private int[] addresses;
+    private long[] values;
+
+    private int count;
+    private boolean started;
+
+    MemoryScanner(PineClient client, ValueType type, int start, int length, ForkJoinPool pool) {
+        if (Integer.remainderUnsigned(start, type.width) != 0 || length < type.width) {
+            throw new IllegalArgumentException("Invalid region: start %#x, length %d for %s"
+                    .formatted(start, length, type));
+        }
+        this.client = client;
+        this.type = type;
+        this.start = start;
+        this.slots = length / type.width;
+        this.pool = pool;
+        this.reads = new BulkAccess.Reads(client);
+    }
+
+    public ValueType type() {
+        return type;
+    }
+
+    /**
+     * @return Number of remaining candidates, or 0 before the first scan.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return True if the first scan has been made.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Scans the region on the first call and narrows the candidates on the following calls.
+     * Relative filters compare against the value of each candidate from the previous scan.
+     *
+     * @return Number of remaining candidates.
+     * @throws IllegalArgumentException if the first scan is made with a relative filter.
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public int scan(Filter filter) {
+        Filter.Bound bound = filter.bind(type);
+        if (!started) {
+            if (filter.relative()) {
+                throw new IllegalArgumentException("First scan needs an absolute filter, got " + filter.kind);
+            }
+            scope = ResourceScope.newSharedScope();
+            bits = new long[(slots + 63) >>> 6];
+            started = true;
+            scanDense(bound, true);
+        } else if (bits != null) {
+            scanDense(bound, false);
+        } else {
+            scanSparse(bound);
+        }
+        if (bits != null && (long) count * (Integer.BYTES + Long.BYTES) < (long) bits.length * Long.BYTES) {
+            toSparse();
+        }
+        return count;
+    }
+
+    /**
+     * Forgets all candidates and frees the memory used by them, so the next scan is a first scan again.
+     */
+    public void reset() {
+        if (scope != null) {
+            scope.close();
+        }
+        scope = null;
+        previous = null;
+        current = null;
+        bits = null;
+        addresses = null;
+        values = null;
+        count = 0;
+        started = false;
+    }
+
+    /**
+     * @return Addresses of at most {@code limit} candidates in ascending order.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    public int[] addresses(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        int[] result = new int[Math.min(limit, count)];
+        if (result.length == 0) {
+            return result;
+        }
+        forEach(new Candidates() {
+            private int i;
+
+            @Override
+            public boolean accept(int address, long value) {
+                result[i++] = address;
+                return i < result.length;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Passes every candidate with its value from the latest scan to the consumer in ascending address order.
+     */
+    public void forEach(Candidates consumer) {
+        if (count == 0) {
+            return;
+        }
+        if (bits == null) {
+            for (int i = 0; i < count; i++) {
+                if (!consumer.accept(addresses[i], values[i])) {
+                    return;
+                }
+            }
+            return;
+        }
+        ByteBuffer data = buffer(previous);
+        for (int word = 0; word < bits.length; word++) {
+            for (long w = bits[word]; w != 0; w &= w - 1) {
+                int slot = (word << 6) + Long.numberOfTrailingZeros(w);
+                int offset = slot * type.width;
+                if (!consumer.accept(start + offset, type.get(data, offset))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees the memory used by the candidates.
+     */
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private void scanDense(Filter.Bound bound, boolean first) {
+        if (previous == null) {
+            previous = MemorySegment.allocateNative((long) slots * type.width, Long.BYTES, scope);
+        }
+        if (current == null && !first) {
+            current = MemorySegment.allocateNative((long) slots * type.width, Long.BYTES, scope);
+        }
+        // The first scan reads straight into the segment that holds the previous values afterwards.
+        MemorySegment target = first ? previous : current;
+        ByteBuffer fresh = buffer(target);
+        ByteBuffer old = first ? null : buffer(previous);
+        int length = slots * type.width;
+        int slotsPerChunk = CHUNK / type.width;
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+        RuntimeException failure = null;
+        try {
+            for (int offset = 0, slot = 0; offset < length; offset += CHUNK, slot += slotsPerChunk) {
+                int from = slot;
+                int to = Math.min(slots, slot + slotsPerChunk);
+                if (!first && !anySet(from, to)) {
+                    continue;
+                }
+                reads.read(start + offset, fresh, offset, (to - from) * type.width);
+                reads.finish();
+                tasks.add(pool.submit(() -> filterDense(bound, fresh, old, from, to)));
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // Submitted tasks still use the segments, so they are joined before any failure is thrown.
+        count = 0;
+        for (ForkJoinTask<Integer> task : tasks) {
+            try {
+                count += task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (!first) {
+            // Chunks without candidates were not read, their stale values are never looked at.
+            MemorySegment swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    private int filterDense(Filter.Bound bound, ByteBuffer fresh, ByteBuffer old, int from, int to) {
+        // Chunks start at multiples of 64 slots, so every task owns whole words of the bitset.
+        int matches = 0;
+        for (int word = from >>> 6; word < (to + 63) >>> 6; word++) {
+            long candidates = old == null ? -1L : bits[word];
+            int end = Math.min(64, to - (word << 6));
+            if (end < 64) {
+                candidates &= (1L << end) - 1;
+            }
+            long result = 0;
+            for (long w = candidates; w != 0; w &= w - 1) {
+                int bit = Long.numberOfTrailingZeros(w);
+                int offset = ((word << 6) + bit) * type.width;
+                long value = type.get(fresh, offset);
+                if (bound.test(old == null ? value : type.get(old, offset), value)) {
+                    result |= 1L << bit;
+                }
+            }
+            bits[word] = result;
+            matches += Long.bitCount(result);
+        }
+        return matches;
+    }
+
+    private boolean anySet(int from, int to) {
+        for (int word = from >>> 6; word < (to + 63) >>> 6; word++) {
+            if (bits[word] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void toSparse() {
+        int[] newAddresses = new int[count];
+        long[] newValues = new long[count];
+        forEach(new Candidates() {
+            private int i;
+
+            @Override
+            public boolean accept(int address, long value) {
+                newAddresses[i] = address;
+                newValues[i++] = value;
+                return true;
+            }
+        });
+        scope.close();
+        scope = null;
+        previous = null;
+        current = null;
+        bits = null;
+        addresses = newAddresses;
+        values = newValues;
+    }
+
+    private void scanSparse(Filter.Bound bound) {
+        byte[] commands = new byte[count];
+        Arrays.fill(commands, type.command.toByte());
+        long[] fresh = new long[count];
+        BulkAccess.read(client, addresses, commands, fresh, count);
+
+        long[] keep = new long[(count + 63) >>> 6];
+        pool.invoke(new SparseFilter(bound, fresh, keep, 0, keep.length));
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if ((keep[i >>> 6] & (1L << i)) != 0) {
+                addresses[kept] = addresses[i];
+                values[kept++] = fresh[i];
+            }
+        }
+        count = kept;
+    }
+
+    private ByteBuffer buffer(MemorySegment segment) {
+        return segment.asByteBuffer().order(client.byteOrder());
+    }
+
+    private final class SparseFilter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Filter.Bound bound;
+        private final long[] fresh;
+        private final long[] keep;
+        private final int fromWord;
+        private final int toWord;
+
+        private SparseFilter(Filter.Bound bound, long[] fresh, long[] keep, int fromWord, int toWord) {
+            this.bound = bound;
+            this.fresh = fresh;
+            this.keep = keep;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+
+        @Override
+        protected void compute() {
+            if ((toWord - fromWord) << 6 > SPARSE_TASK) {
+                int middle = (fromWord + toWord) >>> 1;
+                invokeAll(new SparseFilter(bound, fresh, keep, fromWord, middle),
+                        new SparseFilter(bound, fresh, keep, middle, toWord));
+                return;
+            }
+            for (int word = fromWord; word < toWord; word++) {
+                long result = 0;
+                int end = Math.min(64, count - (word << 6));
+                for (int bit = 0; bit < end; bit++) {
+                    int i = (word << 6) + bit;
+                    if (bound.test(values[i], fresh[i])) {
+                        result |= 1L << bit;
+                    }
+                }
+                keep[word] = result;
+            }
+        }
+    }
+
+    /**
+     * Receiver of candidates.
+     */
+    @FunctionalInterface
+    public interface Candidates {
+        /**
+         * @param value Raw value of the candidate, sign extended from the width of the type.
+         * @return False to stop iterating.
+         */
+        boolean accept(int address, long value);
+    }
+
+    /**
+     * Type of the searched values. Values are aligned to their width.
+     */
+    public enum ValueType {
+        BYTE(1, PineEnums.Command.READ_8),
+        SHORT(2, PineEnums.Command.READ_16),
+        INT(4, PineEnums.Command.READ_32),
+        LONG(8, PineEnums.Command.READ_64),
+        FLOAT(4, PineEnums.Command.READ_32),
+        DOUBLE(8, PineEnums.Command.READ_64);
+
+        private final int width;
+
+        private final PineEnums.Command command;
+
+        ValueType(int width, PineEnums.Command command) {
+            this.width = width;
+            this.command = command;
+        }
+
+        public int width() {
+            return width;
+        }
+
+        private long get(ByteBuffer buffer, int offset) {
+            return switch (width) {
+                case 1 -> buffer.get(offset);
+                case 2 -> buffer.getShort(offset);
+                case 4 -> buffer.getInt(offset);
+                default -> buffer.getLong(offset);
+            };
+        }
+
+        private int compare(long a, long b) {
+            return switch (this) {
+                case FLOAT -> Float.compare(Float.intBitsToFloat((int) a), Float.intBitsToFloat((int) b));
+                case DOUBLE -> Double.compare(Double.longBitsToDouble(a), Double.longBitsToDouble(b));
+                default -> Long.compare(a, b);
+            };
+        }
+
+        private long bits(long value) {
+            return switch (this) {
+                case BYTE -> (byte) value;
+                case SHORT -> (short) value;
+                case INT -> (int) value;
+                case LONG -> value;
+                case FLOAT -> Float.floatToRawIntBits(value);
+                case DOUBLE -> Double.doubleToRawLongBits(value);
+            };
+        }
+
+        private long bits(double value) {
+            return switch (this) {
+                case FLOAT -> Float.floatToRawIntBits((float) value);
+                case DOUBLE -> Double.doubleToRawLongBits(value);
+                default -> bits((long) value);
+            };
+        }
+    }
+
+    /**
+     * Condition a candidate has to fulfill to stay in the search.
+     */
+    public static final class Filter {
+        private enum Kind { ANY, EXACT, RANGE, CHANGED, UNCHANGED, INCREASED, DECREASED }
+
+        private final Kind kind;
+
+        private final long min;
+
+        private final long max;
+
+        private final double minDouble;
+
+        private final double maxDouble;
+
+        private final boolean floating;
+
+        private Filter(Kind kind, long min, long max, double minDouble, double maxDouble, boolean floating) {
+            this.kind = kind;
+            this.min = min;
+            this.max = max;
+            this.minDouble = minDouble;
+            this.maxDouble = maxDouble;
+            this.floating = floating;
+        }
+
+        /**
+         * Matches every value, for starting a search for an unknown value.
+         */
+        public static Filter any() {
+            return new Filter(Kind.ANY, 0, 0, 0, 0, false);
+        }
+
+        public static Filter exact(long value) {
+            return new Filter(Kind.EXACT, value, value, 0, 0, false);
+        }
+
+        public static Filter exact(double value) {
+            return new Filter(Kind.EXACT, 0, 0, value, value, true);
+        }
+
+        /**
+         * Matches values between the bounds, both inclusive.
+         */
+        public static Filter range(long min, long max) {
+            return new Filter(Kind.RANGE, min, max, 0, 0, false);
+        }
+
+        /**
+         * Matches values between the bounds, both inclusive.
+         */
+        public static Filter range(double min, double max) {
+            return new Filter(Kind.RANGE, 0, 0, min, max, true);
+        }
+
+        public static Filter changed() {
+            return new Filter(Kind.CHANGED, 0, 0, 0, 0, false);
+        }
+
+        public static Filter unchanged() {
+            return new Filter(Kind.UNCHANGED, 0, 0, 0, 0, false);
+        }
+
+        public static Filter increased() {
+            return new Filter(Kind.INCREASED, 0, 0, 0, 0, false);
+        }
+
+        public static Filter decreased() {
+            return new Filter(Kind.DECREASED, 0, 0, 0, 0, false);
+        }
+
+        private boolean relative() {
+            return kind.compareTo(Kind.CHANGED) >= 0;
+        }
+
+        private Bound bind(ValueType type) {
+            return new Bound(type, kind,
+                    floating ? type.bits(minDouble) : type.bits(min),
+                    floating ? type.bits(maxDouble) : type.bits(max));
+        }
+
+        private record Bound(ValueType type, Kind kind, long min, long max) {
+            boolean test(long previous, long current) {
+                return switch (kind) {
+                    case ANY -> true;
+                    case EXACT -> type.compare(current, min) == 0;
+                    case RANGE -> type.compare(current, min) >= 0 && type.compare(current, max) <= 0;
+                    case CHANGED -> type.compare(current, previous) != 0;
+                    case UNCHANGED -> type.compare(current, previous) == 0;
+                    case INCREASED -> type.compare(current, previous) > 0;
+                    case DECREASED -> type.compare(current, previous) < 0;
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package pinej;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Publishes values of memory addresses, structures and regions as {@link Flow.Publisher} streams.
+ * <p>
+ * Every poll reads only the ranges which have a subscriber with outstanding demand, so streams nobody is requesting
+ * from cost no IPC. Subscribers of the same range share one source, and overlapping or adjacent ranges are merged, so
+ * all streams are read in one batched request. A value is published when its bytes change, starting with the first
+ * poll after subscribing. Each subscriber holds only the latest unrequested value: a slow subscriber gets the newest
+ * value when it requests again instead of a queue of stale ones. Signals are delivered on an {@link Executor}, never
+ * on the polling thread. The client must not be used from other threads while the streams are running.
+ */
+public class MemoryStreams implements AutoCloseable {
+    /**
+     * Largest gap between two ranges which are still read as one.
+     */
+    private static final int MERGE_GAP = 8;
+
+    private final PineClient client;
+
+    private final Executor executor;
+
+    private final BulkAccess.Reads reads;
+
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    private final Map<Long, Source> sources = new HashMap<>();
+
+    private final List<Source> polled = new ArrayList<>();
+
+    private ByteBuffer buffer;
+
+    private boolean closed;
+
+    private volatile Consumer<RuntimeException> errorHandler;
+
+    private ScheduledExecutorService scheduler;
+
+    MemoryStreams(PineClient client, Executor executor) {
+        this.client = client;
+        this.executor = executor;
+        this.reads = new BulkAccess.Reads(client);
+        this.buffer = ByteBuffer.allocateDirect(256).order(client.byteOrder());
+    }
+
+    public Flow.Publisher<Byte> ofByte(int address) {
+        return publisher(address, Byte.BYTES, ByteBuffer::get);
+    }
+
+    public Flow.Publisher<Short> ofShort(int address) {
+        return publisher(address, Short.BYTES, ByteBuffer::getShort);
+    }
+
+    public Flow.Publisher<Integer> ofInt(int address) {
+        return publisher(address, Integer.BYTES, ByteBuffer::getInt);
+    }
+
+    public Flow.Publisher<Long> ofLong(int address) {
+        return publisher(address, Long.BYTES, ByteBuffer::getLong);
+    }
+
+    public Flow.Publisher<Float> ofFloat(int address) {
+        return publisher(address, Float.BYTES, ByteBuffer::getFloat);
+    }
+
+    public Flow.Publisher<Double> ofDouble(int address) {
+        return publisher(address, Double.BYTES, ByteBuffer::getDouble);
+    }
+
+    /**
+     * @return Stream of the structure at the address, decoded with the mapping.
+     */
+    public <R extends Record> Flow.Publisher<R> ofStruct(StructMapping<R> mapping, int address) {
+        return publisher(address, mapping.size(), mapping::decode);
+    }
+
+    /**
+     * @return Stream of copies of the region, as read-only buffers in the byte order of the target platform.
+     */
+    public Flow.Publisher<ByteBuffer> ofRegion(int address, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Region length must be positive: " + length);
+        }
+        return publisher(address, length, (data, offset) -> {
+            ByteBuffer copy = ByteBuffer.allocate(length).order(data.order());
+            copy.put(0, data, offset, length);
+            return copy.asReadOnlyBuffer().order(data.order());
+        });
+    }
+
+    /**
+     * Sets the handler for errors thrown by scheduled polls, after which polling continues. Without a handler, a failed
+     * poll fails the subscriptions it was reading for with {@link Flow.Subscriber#onError}.
+     */
+    public void setErrorHandler(Consumer<RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Starts polling on a dedicated daemon thread. Polls without outstanding demand return without IPC.
+     *
+     * @param period Time between polls.
+     */
+    public synchronized void start(Duration period) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Streams are already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MemoryStreams");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::scheduledPoll, 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reads all ranges with outstanding demand in one batch and publishes the changed values.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void poll() {
+        pollLock.lock();
+        try {
+            pollLocked();
+        } finally {
+            polled.clear();
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Stops polling, waits for a running poll to finish and completes all subscriptions.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        List<Source> all;
+        pollLock.lock();
+        try {
+            synchronized (this) {
+                closed = true;
+                all = new ArrayList<>(sources.values());
+                sources.clear();
+            }
+        } finally {
+            pollLock.unlock();
+        }
+        for (Source source : all) {
+            for (Sub<?> sub : source.subscribers) {
+                sub.complete();
+            }
+        }
+    }
+
+    private void scheduledPoll() {
+        pollLock.lock();
+        try {
+            pollLocked();
+        } catch (RuntimeException e) {
+            Consumer<RuntimeException> handler = errorHandler;
+            if (handler != null) {
+                handler.accept(e);
+            } else {
+                for (Source source : polled) {
+                    for (Sub<?> sub : source.subscribers) {
+                        sub.fail(e);
+                    }
+                }
+            }
+        } finally {
+            polled.clear();
+            pollLock.unlock();
+        }
+    }
+
+    private void pollLocked() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            collect();
+            if (polled.isEmpty()) {
+                return;
+            }
+            read();
+        }
+        for (Source source : polled) {
+            source.publish();
+        }
+    }
+
+    private <T> Flow.Publisher<T> publisher(int address, int length, Decoder<T> decoder) {
+        return subscriber -> subscribe(address, length, decoder, subscriber);
+    }
+
+    private <T> void subscribe(int address, int length, Decoder<T> decoder, Flow.Subscriber<? super T> subscriber) {
+        Sub<T> sub;
+        synchronized (this) {
+            if (closed) {
+                sub = null;
+            } else {
+                Source source = sources.computeIfAbsent(key(address, length), k -> new Source(address, length));
+                sub = new Sub<>(source, decoder, subscriber);
+                source.subscribers.add(sub);
+            }
+        }
+        if (sub == null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) { }
+
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("Streams are closed"));
+            return;
+        }
+        subscriber.onSubscribe(sub);
+    }
+
+    private synchronized void remove(Sub<?> sub) {
+        Source source = sub.source;
+        if (source.subscribers.remove(sub) && source.subscribers.isEmpty()) {
+            sources.remove(key(source.address, source.length));
+        }
+    }
+
+    /**
+     * Collects the sources with demand in address order and lays out their merged ranges in the buffer.
+     */
+    private void collect() {
+        for (Source source : sources.values()) {
+            if (source.hasDemand()) {
+                polled.add(source);
+            }
+        }
+        polled.sort(Comparator.comparingLong(source -> Integer.toUnsignedLong(source.address)));
+        long runStart = -1;
+        long runEnd = -1;
+        int size = 0;
+        for (Source source : polled) {
+            long start = Integer.toUnsignedLong(source.address);
+            if (runStart < 0 || start > runEnd + MERGE_GAP) {
+                runStart = start;
+                runEnd = start;
+                source.offset = size;
+            } else {
+                source.offset = size - (int) (runEnd - start);
+            }
+            long end = start + source.length;
+            if (end > runEnd) {
+                size += (int) (end - runEnd);
+                runEnd = end;
+            }
+        }
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, buffer.capacity() * 2)).order(client.byteOrder());
+        }
+    }
+
+    private void read() {
+        int runOffset = -1;
+        long runStart = 0;
+        long runEnd = 0;
+        for (Source source : polled) {
+            long start = Integer.toUnsignedLong(source.address);
+            if (runOffset < 0 || start > runEnd + MERGE_GAP) {
+                if (runOffset >= 0) {
+                    reads.read((int) runStart, buffer, runOffset, (int) (runEnd - runStart));
+                }
+                runOffset = source.offset;
+                runStart = start;
+                runEnd = start;
+            }
+            runEnd = Math.max(runEnd, start + source.length);
+        }
+        reads.read((int) runStart, buffer, runOffset, (int) (runEnd - runStart));
+        reads.finish();
+        for (Source source : polled) {
+            source.sample(buffer);
+        }
+    }
+
+    private static long key(int address, int length) {
+        return ((long) address << 32) | Integer.toUnsignedLong(length);
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode(ByteBuffer data, int offset);
+    }
+
+    /**
+     * Range read for all subscribers of it, with the bytes of the latest poll.
+     */
+    private final class Source {
+        private final int address;
+
+        private final int length;
+
+        private final List<Sub<?>> subscribers = new CopyOnWriteArrayList<>();
+
+        private final ByteBuffer last;
+
+        private boolean sampled;
+
+        private boolean changed;
+
+        private int offset;
+
+        private Source(int address, int length) {
+            this.address = address;
+            this.length = length;
+            this.last = ByteBuffer.allocate(length).order(client.byteOrder());
+        }
+
+        private boolean hasDemand() {
+            for (Sub<?> sub : subscribers) {
+                if (sub.requested.get() > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void sample(ByteBuffer data) {
+            changed = !sampled || data.slice(offset, length).compareTo(last) != 0;
+            if (changed) {
+                last.put(0, data, offset, length);
+            }
+            sampled = true;
+        }
+
+        /**
+         * Offers a changed value to all subscribers, and an unchanged one to those which have not had a value yet.
+         */
+        private void publish() {
+            for (Sub<?> sub : subscribers) {
+                if (changed || sub.fresh) {
+                    sub.offer(last);
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscription holding the latest undelivered value of one subscriber.
+     */
+    private final class Sub<T> implements Flow.Subscription {
+        private final Source source;
+
+        private final Decoder<T> decoder;
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private final AtomicReference<T> pending = new AtomicReference<>();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+
+        private volatile boolean done;
+
+        private volatile Throwable error;
+
+        // Set until the first value is offered, which is the current one even if it has not changed.
+        private volatile boolean fresh = true;
+
+        private Sub(Source source, Decoder<T> decoder, Flow.Subscriber<? super T> subscriber) {
+            this.source = source;
+            this.decoder = decoder;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested " + n + " items, must be positive");
+                done = true;
+            } else {
+                requested.accumulateAndGet(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        private void offer(ByteBuffer data) {
+            if (!cancelled) {
+                fresh = false;
+                pending.set(decoder.decode(data, 0));
+                drain();
+            }
+        }
+
+        private void complete() {
+            done = true;
+            drain();
+        }
+
+        private void fail(Throwable failure) {
+            error = failure;
+            done = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drainLoop);
+            }
+        }
+
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    pending.set(null);
+                } else if (done) {
+                    cancelled = true;
+                    remove(this);
+                    Throwable failure = error;
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                } else {
+                    T value;
+                    while (requested.get() > 0 && (value = pending.getAndSet(null)) != null) {
+                        if (requested.get() != Long.MAX_VALUE) {
+                            requested.decrementAndGet();
+                        }
+                        try {
+                            subscriber.onNext(value);
+                        } catch (RuntimeException e) {
+                            cancel();
+                            break;
+                        }
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package pinej;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Polls registered memory addresses and notifies listeners when their values change.
+ * <p>
+ * Every tick reads all watched addresses in one batched request. Addresses, widths and last values are kept in
+ * primitive arrays, so polling does not allocate. Listeners are not notified of the first value sampled after
+ * registration. The client must not be used from other threads while the watcher is running.
+ */
+public class MemoryWatcher implements AutoCloseable {
+
+    /**
+     * Listener for integer watches. Values are sign extended to long.
+     */
+    @FunctionalInterface
+    public interface LongListener {
+        void changed(int address, long oldValue, long newValue);
+    }
+
+    /**
+     * Listener for floating point watches.
+     */
+    @FunctionalInterface
+    public interface DoubleListener {
+        void changed(int address, double oldValue, double newValue);
+    }
+
+    private final PineClient client;
+
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    private volatile Table table = new Table(new Watch[0]);
+
+    private volatile Consumer<RuntimeException> errorHandler = e -> { };
+
+    private ScheduledExecutorService scheduler;
+
+    public MemoryWatcher(PineClient client) {
+        this.client = client;
+    }
+
+    public Watch watchByte(int address, LongListener listener) {
+        return add(address, PineEnums.Command.READ_8, listener);
+    }
+
+    public Watch watchShort(int address, LongListener listener) {
+        return add(address, PineEnums.Command.READ_16, listener);
+    }
+
+    public Watch watchInt(int address, LongListener listener) {
+        return add(address, PineEnums.Command.READ_32, listener);
+    }
+
+    public Watch watchLong(int address, LongListener listener) {
+        return add(address, PineEnums.Command.READ_64, listener);
+    }
+
+    public Watch watchFloat(int address, DoubleListener listener) {
+        return add(address, PineEnums.Command.READ_32, listener);
+    }
+
+    public Watch watchDouble(int address, DoubleListener listener) {
+        return add(address, PineEnums.Command.READ_64, listener);
+    }
+
+    /**
+     * @return Number of registered watches.
+     */
+    public int size() {
+        return table.watches.length;
+    }
+
+    /**
+     * Sets the handler for errors thrown by scheduled polls and by listeners. By default they are ignored and polling
+     * continues. An exception thrown by a listener does not keep the other listeners from being notified.
+     */
+    public void setErrorHandler(Consumer<RuntimeException> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Starts polling on a dedicated daemon thread.
+     *
+     * @param period Time between ticks.
+     */
+    public synchronized void start(Duration period) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Watcher is already running");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "MemoryWatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService executor = scheduler;
+        executor.scheduleAtFixedRate(() -> scheduledPoll(executor), 0, period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reads all watched addresses once and notifies the listeners of changed values.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void poll() {
+        pollLock.lock();
+        try {
+            // The IPC runs without the monitor, so watches can be added, cancelled and read during a poll.
+            Table current = table;
+            current.read(client);
+            int changes;
+            synchronized (this) {
+                changes = current.apply();
+                if (table != current) {
+                    table.carry(current);
+                }
+            }
+            current.notifyChanges(changes, errorHandler);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    /**
+     * Stops polling and waits for a running poll to finish, so listeners are not notified after this returns.
+     * Registered watches are kept.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        pollLock.lock();
+        pollLock.unlock();
+    }
+
+    private void scheduledPoll(ScheduledExecutorService executor) {
+        pollLock.lock();
+        try {
+            // A poll which was waiting for the lock while the watcher was closed is skipped.
+            synchronized (this) {
+                if (scheduler != executor) {
+                    return;
+                }
+            }
+            poll();
+        } catch (RuntimeException e) {
+            errorHandler.accept(e);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private synchronized Watch add(int address, PineEnums.Command command, Object listener) {
+        Watch watch = new Watch(address, command, listener);
+        Watch[] watches = Arrays.copyOf(table.watches, table.watches.length + 1);
+        watches[watches.length - 1] = watch;
+        table = table.rebuild(watches);
+        return watch;
+    }
+
+    private synchronized void remove(Watch watch) {
+        Watch[] watches = Arrays.stream(table.watches)
+                .filter(w -> w != watch)
+                .toArray(Watch[]::new);
+        if (watches.length != table.watches.length) {
+            table = table.rebuild(watches);
+        }
+    }
+
+    /**
+     * Immutable set of watches with the mutable sample state belonging to it.
+     */
+    private static final class Table {
+        private final Watch[] watches;
+        private final int[] addresses;
+        private final byte[] commands;
+        private final long[] values;
+        private final boolean[] sampled;
+        private final long[] replies;
+        private final int[] changed;
+        private final long[] oldValues;
+
+        private Table(Watch[] watches) {
+            this.watches = watches;
+            int size = watches.length;
+            addresses = new int[size];
+            commands = new byte[size];
+            values = new long[size];
+            sampled = new boolean[size];
+            replies = new long[size];
+            changed = new int[size];
+            oldValues = new long[size];
+            for (int i = 0; i < size; i++) {
+                addresses[i] = watches[i].address;
+                commands[i] = watches[i].command.toByte();
+            }
+        }
+
+        private Table rebuild(Watch[] watches) {
+            Table table = new Table(watches);
+            table.carry(this);
+            return table;
+        }
+
+        /**
+         * Copies the sampled values of the watches this table shares with an older one, which lists them in the same
+         * order.
+         */
+        private void carry(Table older) {
+            int from = 0;
+            for (int i = 0; i < watches.length; i++) {
+                int j = from;
+                while (j < older.watches.length && older.watches[j] != watches[i]) {
+                    j++;
+                }
+                if (j < older.watches.length) {
+                    values[i] = older.values[j];
+                    sampled[i] = older.sampled[j];
+                    from = j + 1;
+                }
+            }
+        }
+
+        private void read(PineClient client) {
+            if (watches.length > 0) {
+                BulkAccess.read(client, addresses, commands, replies, watches.length);
+            }
+        }
+
+        /**
+         * Stores the replies of the latest read as the values and collects the changed ones.
+         */
+        private int apply() {
+            int size = watches.length;
+            int changes = 0;
+            for (int i = 0; i < size; i++) {
+                long value = replies[i];
+                if (sampled[i] && value != values[i]) {
+                    changed[changes] = i;
+                    oldValues[changes] = values[i];
+                    changes++;
+                }
+                values[i] = value;
+                sampled[i] = true;
+            }
+            return changes;
+        }
+
+        private void notifyChanges(int changes, Consumer<RuntimeException> errorHandler) {
+            for (int c = 0; c < changes; c++) {
+                int i = changed[c];
+                Watch watch = watches[i];
+                if (!watch.cancelled) {
+                    try {
+                        watch.notify(oldValues[c], values[i]);
+                    } catch (RuntimeException e) {
+                        errorHandler.accept(e);
+                    }
+                }
+            }
+        }
+
+        private long value(Watch watch) {
+            for (int i = 0; i < watches.length; i++) {
+                if (watches[i] == watch) {
+                    if (!sampled[i]) {
+                        throw new IllegalStateException("Watch has not been sampled yet");
+                    }
+                    return values[i];
+                }
+            }
+            throw new IllegalStateException("Watch has been cancelled");
+        }
+    }
+
+    /**
+     * Registered watch of a single address.
+     */
+    public final class Watch {
+        private final int address;
+
+        private final PineEnums.Command command;
+
+        private final Object listener;
+
+        private volatile boolean cancelled;
+
+        private Watch(int address, PineEnums.Command command, Object listener) {
+            this.address = address;
+            this.command = command;
+            this.listener = listener;
+        }
+
+        public int address() {
+            return address;
+        }
+
+        /**
+         * @return Raw value from the latest poll, sign extended for integers and as bits for floating point values.
+         * @throws IllegalStateException if the watch has not been sampled yet or has been cancelled.
+         */
+        public long rawValue() {
+            synchronized (MemoryWatcher.this) {
+                return table.value(this);
+            }
+        }
+
+        /**
+         * Removes the watch. Its listener is not notified after this method returns, except by a poll already
+         * delivering changes.
+         */
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        private void notify(long oldValue, long newValue) {
+            if (listener instanceof LongListener longListener) {
+                longListener.changed(address, oldValue, newValue);
+            } else if (command == PineEnums.Command.READ_32) {
+                ((DoubleListener) listener).changed(address,
+                        Float.intBitsToFloat((int) oldValue), Float.intBitsToFloat((int) newValue));
+            } else {
+                ((DoubleListener) listener).changed(address,
+                        Double.longBitsToDouble(oldValue), Double.longBitsToDouble(newValue));
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package pinej;
+
+import pinej.internal.ConnectionErrorEvent;
+import pinej.internal.SlowCommandEvent;
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accessor decorator which counts commands and errors and records latency histograms of the calls made through it.
+ * <p>
+ * Counters are {@link LongAdder}s, so concurrent clients sharing the accessor do not contend on them. Errors are counted
+ * once per failed operation, by checking the error state after every sent batch and unbatched command. Calls slower than
+ * the threshold emit a {@code pinej.SlowCommand} flight recorder event and {@link PineEnums.Error#NO_CONNECTION} errors
+ * a {@code pinej.ConnectionError} event. When disabled, calls are only forwarded.
+ */
+public class MetricsPineAccessor implements PineAccessor {
+    private static final PineEnums.Command[] COMMANDS = PineEnums.Command.values();
+    private static final PineEnums.Error[] ERRORS = PineEnums.Error.values();
+    private static final int BUCKETS = 64;
+
+    private final PineAccessor delegate;
+
+    private final long slowNanos;
+
+    private final Stats[] commands = new Stats[COMMANDS.length];
+
+    private final Stats batches = new Stats();
+
+    private final LongAdder[] errors = new LongAdder[ERRORS.length];
+
+    private volatile boolean enabled = true;
+
+    public MetricsPineAccessor(PineAccessor delegate) {
+        this(delegate, Duration.ofMillis(10));
+    }
+
+    /**
+     * @param delegate Accessor to forward the calls to.
+     * @param slowThreshold Latency from which on calls are reported as slow.
+     */
+    public MetricsPineAccessor(PineAccessor delegate, Duration slowThreshold) {
+        this.delegate = delegate;
+        this.slowNanos = slowThreshold.toNanos();
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = new Stats();
+        }
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Current values of the metrics. Counters keep running while the snapshot is taken.
+     */
+    public PineMetrics snapshot() {
+        Map<PineEnums.Command, PineMetrics.Latency> commandMetrics = new EnumMap<>(PineEnums.Command.class);
+        for (int i = 0; i < COMMANDS.length; i++) {
+            commandMetrics.put(COMMANDS[i], commands[i].snapshot());
+        }
+        Map<PineEnums.Error, Long> errorMetrics = new EnumMap<>(PineEnums.Error.class);
+        for (int i = 0; i < ERRORS.length; i++) {
+            errorMetrics.put(ERRORS[i], errors[i].sum());
+        }
+        return new PineMetrics(commandMetrics, batches.snapshot(), errorMetrics);
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        for (Stats stats : commands) {
+            stats.reset();
+        }
+        batches.reset();
+        for (LongAdder error : errors) {
+            error.reset();
+        }
+    }
+
+    @Override
+    public MemoryAddress allocatePS2() {
+        return delegate.allocatePS2();
+    }
+
+    @Override
+    public MemoryAddress allocatePS3() {
+        return delegate.allocatePS3();
+    }
+
+    @Override
+    public MemoryAddress allocate(PineEnums.TargetPlatform platform, int slot) {
+        return delegate.allocate(platform, slot);
+    }
+
+    @Override
+    public void initializeBatch(MemoryAddress ipc) {
+        delegate.initializeBatch(ipc);
+    }
+
+    @Override
+    public void freeDataStream(MemoryAddress ipc) {
+        delegate.freeDataStream(ipc);
+    }
+
+    @Override
+    public int finalizeBatch(MemoryAddress ipc) {
+        return delegate.finalizeBatch(ipc);
+    }
+
+    @Override
+    public long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
+        return delegate.getReply(ipc, cmd, place, command);
+    }
+
+    @Override
+    public MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        return delegate.getReplyString(ipc, cmd, place, command);
+    }
+
+    @Override
+    public void sendCommand(MemoryAddress ipc, int command) {
+        if (!enabled) {
+            delegate.sendCommand(ipc, command);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.sendCommand(ipc, command);
+        long latency = System.nanoTime() - start;
+        batches.record(latency);
+        if (latency >= slowNanos) {
+            slow("BATCH", 0, latency);
+        }
+        countError(ipc);
+    }
+
+    @Override
+    public long read(MemoryAddress ipc, int address, byte command, byte batch) {
+        if (!enabled) {
+            return delegate.read(ipc, address, command, batch);
+        }
+        long start = System.nanoTime();
+        long result = delegate.read(ipc, address, command, batch);
+        record(ipc, command, address, batch, start);
+        return result;
+    }
+
+    @Override
+    public MemoryAddress version(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.version(ipc, batch);
+        }
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.version(ipc, batch);
+        record(ipc, PineEnums.Command.VERSION.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public int emuStatus(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.emuStatus(ipc, batch);
+        }
+        long start = System.nanoTime();
+        int result = delegate.emuStatus(ipc, batch);
+        record(ipc, PineEnums.Command.STATUS.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.getGameTitle(ipc, batch);
+        }
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameTitle(ipc, batch);
+        record(ipc, PineEnums.Command.GAME_TITLE.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.getGameId(ipc, batch);
+        }
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameId(ipc, batch);
+        record(ipc, PineEnums.Command.GAME_ID.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.getGameUuid(ipc, batch);
+        }
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameUuid(ipc, batch);
+        record(ipc, PineEnums.Command.GAME_UUID.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
+        if (!enabled) {
+            return delegate.getGameVersion(ipc, batch);
+        }
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameVersion(ipc, batch);
+        record(ipc, PineEnums.Command.GAME_VERSION.toByte(), 0, batch, start);
+        return result;
+    }
+
+    @Override
+    public void saveState(MemoryAddress ipc, byte slot, byte batch) {
+        if (!enabled) {
+            delegate.saveState(ipc, slot, batch);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.saveState(ipc, slot, batch);
+        record(ipc, PineEnums.Command.SAVE_STATE.toByte(), 0, batch, start);
+    }
+
+    @Override
+    public void loadState(MemoryAddress ipc, byte slot, byte batch) {
+        if (!enabled) {
+            delegate.loadState(ipc, slot, batch);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.loadState(ipc, slot, batch);
+        record(ipc, PineEnums.Command.LOAD_STATE.toByte(), 0, batch, start);
+    }
+
+    @Override
+    public void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
+        if (!enabled) {
+            delegate.write(ipc, address, value, command, batch);
+            return;
+        }
+        long start = System.nanoTime();
+        delegate.write(ipc, address, value, command, batch);
+        record(ipc, command, address, batch, start);
+    }
+
+    @Override
+    public void deletePS2(MemoryAddress ipc) {
+        delegate.deletePS2(ipc);
+    }
+
+    @Override
+    public void deletePS3(MemoryAddress ipc) {
+        delegate.deletePS3(ipc);
+    }
+
+    @Override
+    public void freeBatchCommand(int cmd) {
+        delegate.freeBatchCommand(cmd);
+    }
+
+    @Override
+    public int getError(MemoryAddress ipc) {
+        return delegate.getError(ipc);
+    }
+
+    @Override
+    public String toJavaString(MemoryAddress address) {
+        return delegate.toJavaString(address);
+    }
+
+    private void record(MemoryAddress ipc, byte command, int address, byte batch, long start) {
+        int index = command >= 0 && command < COMMANDS.length - 1 ? command : COMMANDS.length - 1;
+        Stats stats = commands[index];
+        if (batch != 0) {
+            stats.count.increment();
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        stats.record(latency);
+        if (latency >= slowNanos) {
+            slow(COMMANDS[index].name(), address, latency);
+        }
+        countError(ipc);
+    }
+
+    /**
+     * Counts the error left by the operation which was just sent, if any.
+     */
+    private void countError(MemoryAddress ipc) {
+        int error = delegate.getError(ipc);
+        if (error == 0) {
+            return;
+        }
+        if (error > 0 && error < errors.length) {
+            errors[error].increment();
+        }
+        if (error == PineEnums.Error.NO_CONNECTION.ordinal()) {
+            ConnectionErrorEvent event = new ConnectionErrorEvent();
+            if (event.shouldCommit()) {
+                event.error = PineEnums.Error.NO_CONNECTION.name();
+                event.commit();
+            }
+        }
+    }
+
+    private static void slow(String command, int address, long latency) {
+        SlowCommandEvent event = new SlowCommandEvent();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.address = address;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+
+    private static final class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder timed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private Stats() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long latency) {
+            count.increment();
+            timed.increment();
+            totalNanos.add(latency);
+            buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(latency, 0)))].increment();
+        }
+
+        private PineMetrics.Latency snapshot() {
+            long[] values = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                values[i] = buckets[i].sum();
+            }
+            return new PineMetrics.Latency(count.sum(), timed.sum(), totalNanos.sum(), values);
+        }
+
+        private void reset() {
+            count.reset();
+            timed.reset();
+            totalNanos.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+}
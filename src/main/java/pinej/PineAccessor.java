@@ -1,16 +1,75 @@
 package pinej;
 
+import pinej.internal.PineAccessorImpl;
+import pinej.internal.PineProtocol;
+import pinej.internal.PineSocketAccessor;
+import jdk.incubator.foreign.CLinker;
 import jdk.incubator.foreign.MemoryAddress;
 
+import java.nio.file.Path;
+
 /**
  * Interface for accessing the C language bindings of the underlying PINE interface.
  */
 public interface PineAccessor {
 
+    /**
+     * @param library Path to the pine_c library.
+     * @return Accessor calling the reference C implementation through Foreign Linker API, shared with every other
+     * accessor of the same library.
+     * @throws IllegalStateException if a different library has already been loaded, only one can be used per process.
+     */
+    static PineAccessor ofLibrary(Path library) {
+        return PineAccessorImpl.shared(library);
+    }
+
+    /**
+     * @param library Path to the pine_c library.
+     * @param trivialCalls Whether calls which do not wait for the emulator are made as trivial downcalls, which skip
+     * the thread state transition. Reads, writes and status requests are trivial only when they are queued to a batch.
+     * @return Accessor calling the reference C implementation through Foreign Linker API, shared with every other
+     * accessor of the same library and mode.
+     * @throws IllegalStateException if a different library has already been loaded, only one can be used per process.
+     */
+    static PineAccessor ofLibrary(Path library, boolean trivialCalls) {
+        return PineAccessorImpl.shared(library, trivialCalls);
+    }
+
+    /**
+     * @return Accessor speaking the PINE protocol directly to emulator sockets in the default runtime directory.
+     */
+    static PineAccessor ofSocket() {
+        return new PineSocketAccessor();
+    }
+
+    /**
+     * @param directory Directory containing the emulator sockets.
+     * @return Accessor speaking the PINE protocol directly to emulator sockets in the given directory.
+     */
+    static PineAccessor ofSocket(Path directory) {
+        return new PineSocketAccessor(directory);
+    }
+
     MemoryAddress allocatePS2();
 
     MemoryAddress allocatePS3();
 
+    /**
+     * Allocates an IPC structure for the emulator of the given platform listening in the given slot. The C library
+     * only connects to the default slots, so by default other slots are not supported.
+     *
+     * @throws UnsupportedOperationException if the accessor can not connect to the slot.
+     */
+    default MemoryAddress allocate(PineEnums.TargetPlatform platform, int slot) {
+        if (slot != PineProtocol.defaultSlot(platform)) {
+            throw new UnsupportedOperationException("Only the default slot is supported, got " + slot);
+        }
+        return switch (platform) {
+            case PS2 -> allocatePS2();
+            case PS3 -> allocatePS3();
+        };
+    }
+
     void initializeBatch(MemoryAddress ipc);
 
     void freeDataStream(MemoryAddress ipc);
@@ -19,6 +78,8 @@ public interface PineAccessor {
 
     long getReply(MemoryAddress ipc, int cmd, int place, byte command);
 
+    MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command);
+
     void sendCommand(MemoryAddress ipc, int command);
 
     long read(MemoryAddress ipc, int address, byte command, byte batch);
@@ -48,4 +109,13 @@ public interface PineAccessor {
     void freeBatchCommand(int cmd);
 
     int getError(MemoryAddress ipc);
-}
\ No newline at end of file
+
+    /**
+     * Converts a string returned by this accessor to a Java string and frees the returned data.
+     */
+    default String toJavaString(MemoryAddress address) {
+        String s = CLinker.toJavaString(address);
+        freeDataStream(address);
+        return s;
+    }
+}
@@ -0,0 +1,270 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread-safe asynchronous client for sharing a single connection between any number of threads.
+ * <p>
+ * Commands are submitted into a lock-free queue. A single I/O thread drains the queue, sends everything pending as one
+ * batch and completes the futures. If the emulator rejects the batch, its reads and status requests are retried one by
+ * one so that only the failing command fails its future. Its writes are not sent again, as the emulator may have
+ * applied them before the failing command, and fail with the error of the batch. When the connection is lost, all
+ * pending commands fail at once. Commands submitted by one thread are executed in submission order. Dependent
+ * actions attached with the non-async methods of {@link CompletableFuture} run on the I/O thread and should not block.
+ * <p>
+ * The wrapped client must not be used directly while the asynchronous client is open.
+ */
+public class PineAsyncClient implements AutoCloseable {
+    private static final byte BATCH = (byte) 1;
+
+    private final PineClient client;
+
+    private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+
+    private final Thread ioThread;
+
+    private final Request[] pending = new Request[BulkAccess.BATCH_COMMANDS];
+
+    private volatile boolean running = true;
+
+    private volatile boolean sleeping;
+
+    public PineAsyncClient(PineClient client) {
+        this.client = client;
+        this.ioThread = new Thread(this::run, "PineAsyncClient");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public CompletableFuture<Byte> readByteAsync(int address) {
+        return submit(Kind.BYTE, PineEnums.Command.READ_8, address, 0);
+    }
+
+    public CompletableFuture<Short> readShortAsync(int address) {
+        return submit(Kind.SHORT, PineEnums.Command.READ_16, address, 0);
+    }
+
+    public CompletableFuture<Integer> readIntAsync(int address) {
+        return submit(Kind.INT, PineEnums.Command.READ_32, address, 0);
+    }
+
+    public CompletableFuture<Long> readLongAsync(int address) {
+        return submit(Kind.LONG, PineEnums.Command.READ_64, address, 0);
+    }
+
+    public CompletableFuture<Float> readFloatAsync(int address) {
+        return submit(Kind.FLOAT, PineEnums.Command.READ_32, address, 0);
+    }
+
+    public CompletableFuture<Double> readDoubleAsync(int address) {
+        return submit(Kind.DOUBLE, PineEnums.Command.READ_64, address, 0);
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, byte value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_8, address, value);
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, short value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_16, address, value);
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, int value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_32, address, value);
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, long value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_64, address, value);
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, float value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_32, address, Float.floatToRawIntBits(value));
+    }
+
+    public CompletableFuture<Void> writeAsync(int address, double value) {
+        return submit(Kind.WRITE, PineEnums.Command.WRITE_64, address, Double.doubleToRawLongBits(value));
+    }
+
+    public CompletableFuture<PineEnums.Status> getStatusAsync() {
+        return submit(Kind.STATUS, PineEnums.Command.STATUS, 0, 0);
+    }
+
+    /**
+     * Stops the I/O thread after it has finished the current batch. Commands still queued fail with
+     * {@link IllegalStateException}. The wrapped client is not closed. Called from the I/O thread, for example by an
+     * action depending on a future, it returns without waiting for the current batch to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (Thread.currentThread() == ioThread) {
+            return;
+        }
+        LockSupport.unpark(ioThread);
+        boolean interrupted = false;
+        while (ioThread.isAlive()) {
+            try {
+                ioThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(Kind kind, PineEnums.Command command, int address, long value) {
+        Request request = new Request(kind, command.toByte(), address, value, new CompletableFuture<>());
+        queue.offer(request);
+        if (!running) {
+            failQueued();
+        } else if (sleeping) {
+            LockSupport.unpark(ioThread);
+        }
+        return (CompletableFuture<T>) request.future();
+    }
+
+    private void run() {
+        while (running) {
+            int count = drain();
+            if (count > 0) {
+                execute(count);
+                continue;
+            }
+            sleeping = true;
+            if (running && queue.isEmpty()) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future().completeExceptionally(new IllegalStateException("Client is closed"));
+        }
+    }
+
+    private int drain() {
+        int count = 0;
+        Request request;
+        while (count < pending.length && (request = queue.poll()) != null) {
+            pending[count++] = request;
+        }
+        return count;
+    }
+
+    private void execute(int count) {
+        PineAccessor accessor = client.accessor();
+        MemoryAddress ipc = client.ipc();
+        try {
+            accessor.initializeBatch(ipc);
+            for (int i = 0; i < count; i++) {
+                Request request = pending[i];
+                switch (request.kind()) {
+                    case WRITE -> accessor.write(ipc, request.address(), request.value(), request.command(), BATCH);
+                    case STATUS -> accessor.emuStatus(ipc, BATCH);
+                    default -> accessor.read(ipc, request.address(), request.command(), BATCH);
+                }
+            }
+            int cmd = accessor.finalizeBatch(ipc);
+            try {
+                accessor.sendCommand(ipc, cmd);
+                // Also when the batch failed, as the emulator may have applied part of it.
+                invalidateWrites(count);
+                client.checkError("AsyncBatch");
+                for (int i = 0; i < count; i++) {
+                    Request request = pending[i];
+                    long reply = request.kind() == Kind.WRITE ? 0 : accessor.getReply(ipc, cmd, i, request.command());
+                    request.future().complete(decode(request, reply));
+                    pending[i] = null;
+                }
+            } finally {
+                accessor.freeBatchCommand(cmd);
+            }
+        } catch (RuntimeException e) {
+            if (count > 1 && client.getError() == PineEnums.Error.FAIL) {
+                executeSingly(count, e);
+                return;
+            }
+            failPending(0, count, e);
+        }
+    }
+
+    private void invalidateWrites(int count) {
+        for (int i = 0; i < count; i++) {
+            Request request = pending[i];
+            if (request.kind() == Kind.WRITE) {
+                client.invalidate(request.address(), BulkAccess.commandWidth(request.command()));
+            }
+        }
+    }
+
+    private void failPending(int from, int count, RuntimeException e) {
+        for (int i = from; i < count; i++) {
+            if (pending[i] != null) {
+                pending[i].future().completeExceptionally(e);
+                pending[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Executes the pending reads and status requests of a rejected batch one by one, so a failing command only fails
+     * its own future. Writes fail with the error of the batch.
+     */
+    private void executeSingly(int count, RuntimeException batchError) {
+        PineAccessor accessor = client.accessor();
+        MemoryAddress ipc = client.ipc();
+        for (int i = 0; i < count; i++) {
+            Request request = pending[i];
+            if (request == null) {
+                continue;
+            }
+            pending[i] = null;
+            if (request.kind() == Kind.WRITE) {
+                request.future().completeExceptionally(batchError);
+                continue;
+            }
+            try {
+                long reply = request.kind() == Kind.STATUS
+                        ? accessor.emuStatus(ipc, (byte) 0)
+                        : accessor.read(ipc, request.address(), request.command(), (byte) 0);
+                client.checkError("Async");
+                request.future().complete(decode(request, reply));
+            } catch (RuntimeException e) {
+                request.future().completeExceptionally(e);
+                if (client.getError() == PineEnums.Error.NO_CONNECTION) {
+                    failPending(i + 1, count, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Object decode(Request request, long reply) {
+        return switch (request.kind()) {
+            case BYTE -> (byte) reply;
+            case SHORT -> (short) reply;
+            case INT -> (int) reply;
+            case LONG -> reply;
+            case FLOAT -> Float.intBitsToFloat((int) reply);
+            case DOUBLE -> Double.longBitsToDouble(reply);
+            case STATUS -> PineEnums.Status.from((int) reply);
+            case WRITE -> null;
+        };
+    }
+
+    private enum Kind {
+        BYTE, SHORT, INT, LONG, FLOAT, DOUBLE, WRITE, STATUS
+    }
+
+    private record Request(Kind kind, byte command, int address, long value, CompletableFuture<Object> future) { }
+}
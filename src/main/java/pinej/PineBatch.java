@@ -0,0 +1,251 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Builder for queueing multiple commands and sending them to the emulator as a single IPC message.
+ * <p>
+ * Queued commands are kept on the Java side until {@link #send()} is called, so a batch can be built up front and
+ * sent again on every poll. Results are read through the {@link Handle} returned for each queued command and are
+ * refreshed on every successful send. Queueing more commands makes the results unavailable until the batch is sent
+ * again.
+ */
+public class PineBatch {
+    private static final byte BATCH = (byte) 1;
+
+    private final PineClient client;
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    private long[] replies = new long[0];
+
+    private String[] strings = new String[0];
+
+    private boolean sent;
+
+    // Incremented on clear, so handles of the commands cleared can not read the replies of later commands.
+    private int generation;
+
+    PineBatch(PineClient client) {
+        this.client = client;
+    }
+
+    public Handle<Byte> readByte(int address) {
+        return queue(PineEnums.Command.READ_8, address, 0, place -> (byte) replies[place]);
+    }
+
+    public Handle<Short> readShort(int address) {
+        return queue(PineEnums.Command.READ_16, address, 0, place -> (short) replies[place]);
+    }
+
+    public Handle<Integer> readInt(int address) {
+        return queue(PineEnums.Command.READ_32, address, 0, place -> (int) replies[place]);
+    }
+
+    public Handle<Long> readLong(int address) {
+        return queue(PineEnums.Command.READ_64, address, 0, place -> replies[place]);
+    }
+
+    public Handle<Float> readFloat(int address) {
+        return queue(PineEnums.Command.READ_32, address, 0, place -> Float.intBitsToFloat((int) replies[place]));
+    }
+
+    public Handle<Double> readDouble(int address) {
+        return queue(PineEnums.Command.READ_64, address, 0, place -> Double.longBitsToDouble(replies[place]));
+    }
+
+    public Handle<Void> write(int address, byte value) {
+        return queue(PineEnums.Command.WRITE_8, address, value, place -> null);
+    }
+
+    public Handle<Void> write(int address, short value) {
+        return queue(PineEnums.Command.WRITE_16, address, value, place -> null);
+    }
+
+    public Handle<Void> write(int address, int value) {
+        return queue(PineEnums.Command.WRITE_32, address, value, place -> null);
+    }
+
+    public Handle<Void> write(int address, long value) {
+        return queue(PineEnums.Command.WRITE_64, address, value, place -> null);
+    }
+
+    public Handle<Void> write(int address, float value) {
+        return queue(PineEnums.Command.WRITE_32, address, Float.floatToRawIntBits(value), place -> null);
+    }
+
+    public Handle<Void> write(int address, double value) {
+        return queue(PineEnums.Command.WRITE_64, address, Double.doubleToRawLongBits(value), place -> null);
+    }
+
+    public Handle<PineEnums.Status> getStatus() {
+        return queue(PineEnums.Command.STATUS, 0, 0, place -> PineEnums.Status.from((int) replies[place]));
+    }
+
+    public Handle<PineClient.GameInfo> getGameInfo() {
+        sent = false;
+        int place = operations.size();
+        operations.add(new Operation(PineEnums.Command.GAME_TITLE, 0, 0));
+        operations.add(new Operation(PineEnums.Command.GAME_ID, 0, 0));
+        operations.add(new Operation(PineEnums.Command.GAME_UUID, 0, 0));
+        operations.add(new Operation(PineEnums.Command.GAME_VERSION, 0, 0));
+        return new Handle<>(place, p -> new PineClient.GameInfo(strings[p], strings[p + 1], strings[p + 2], strings[p + 3]));
+    }
+
+    /**
+     * @return Number of commands queued in this batch.
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Sends all queued commands as one IPC message and stores the replies for the handles.
+     *
+     * @throws IllegalStateException if the emulator reports an error for the batch.
+     */
+    public void send() {
+        sent = false;
+        if (operations.isEmpty()) {
+            sent = true;
+            return;
+        }
+        PineAccessor accessor = client.accessor();
+        MemoryAddress ipc = client.ipc();
+
+        accessor.initializeBatch(ipc);
+        try {
+            for (Operation operation : operations) {
+                queue(accessor, ipc, operation);
+            }
+        } catch (RuntimeException e) {
+            BulkAccess.discardBatch(accessor, ipc, e);
+            throw e;
+        }
+        int cmd = accessor.finalizeBatch(ipc);
+        try {
+            accessor.sendCommand(ipc, cmd);
+            invalidateWrites();
+            client.checkError("Batch");
+            if (replies.length != operations.size()) {
+                replies = new long[operations.size()];
+                strings = new String[operations.size()];
+            }
+            for (int place = 0; place < operations.size(); place++) {
+                PineEnums.Command command = operations.get(place).command();
+                switch (command) {
+                    case READ_8, READ_16, READ_32, READ_64, STATUS ->
+                            replies[place] = accessor.getReply(ipc, cmd, place, command.toByte());
+                    case VERSION, GAME_TITLE, GAME_ID, GAME_UUID, GAME_VERSION ->
+                            strings[place] = client.toString(accessor.getReplyString(ipc, cmd, place, command.toByte()));
+                    default -> { }
+                }
+            }
+            sent = true;
+        } finally {
+            accessor.freeBatchCommand(cmd);
+        }
+    }
+
+    /**
+     * Removes all queued commands. Handles returned before clearing become invalid.
+     */
+    public void clear() {
+        generation++;
+        operations.clear();
+        Arrays.fill(strings, null);
+        sent = false;
+    }
+
+    /**
+     * Drops the written ranges from the read cache of the client. Called after sending, also when the batch failed, as
+     * the emulator may have applied part of it.
+     */
+    private void invalidateWrites() {
+        for (Operation operation : operations) {
+            switch (operation.command()) {
+                case WRITE_8, WRITE_16, WRITE_32, WRITE_64 ->
+                        client.invalidate(operation.address(), BulkAccess.commandWidth(operation.command().toByte()));
+                default -> { }
+            }
+        }
+    }
+
+    private static void queue(PineAccessor accessor, MemoryAddress ipc, Operation operation) {
+        byte command = operation.command().toByte();
+        switch (operation.command()) {
+            case READ_8, READ_16, READ_32, READ_64 -> accessor.read(ipc, operation.address(), command, BATCH);
+            case WRITE_8, WRITE_16, WRITE_32, WRITE_64 ->
+                    accessor.write(ipc, operation.address(), operation.value(), command, BATCH);
+            case STATUS -> accessor.emuStatus(ipc, BATCH);
+            case GAME_TITLE -> accessor.getGameTitle(ipc, BATCH);
+            case GAME_ID -> accessor.getGameId(ipc, BATCH);
+            case GAME_UUID -> accessor.getGameUuid(ipc, BATCH);
+            case GAME_VERSION -> accessor.getGameVersion(ipc, BATCH);
+            default -> throw new IllegalArgumentException("Command can not be batched: " + operation.command());
+        }
+    }
+
+    private <T> Handle<T> queue(PineEnums.Command command, int address, long value, IntFunction<T> decoder) {
+        // The replies of the last send do not cover the new command.
+        sent = false;
+        int place = operations.size();
+        operations.add(new Operation(command, address, value));
+        return new Handle<>(place, decoder);
+    }
+
+    /**
+     * Reference to the result of a queued command.
+     *
+     * @param <T> Type of the result.
+     */
+    public class Handle<T> {
+        private final int place;
+
+        private final int generation;
+
+        private final IntFunction<T> decoder;
+
+        private Handle(int place, IntFunction<T> decoder) {
+            this.place = place;
+            this.generation = PineBatch.this.generation;
+            this.decoder = decoder;
+        }
+
+        /**
+         * @return Result of the command from the latest successful send.
+         * @throws IllegalStateException if the batch has not been sent successfully after the last command was queued,
+         * or has been cleared since queueing.
+         */
+        public T get() {
+            checkSent();
+            return decoder.apply(place);
+        }
+
+        /**
+         * @return Raw integer reply of the command without boxing. Meaningless for string and write commands.
+         * @throws IllegalStateException if the batch has not been sent successfully after the last command was queued,
+         * or has been cleared since queueing.
+         */
+        public long getAsLong() {
+            checkSent();
+            return replies[place];
+        }
+
+        private void checkSent() {
+            if (generation != PineBatch.this.generation) {
+                throw new IllegalStateException("Batch has been cleared after the command was queued");
+            }
+            if (!sent || place >= operations.size()) {
+                throw new IllegalStateException("Batch has not been sent");
+            }
+        }
+    }
+
+    private record Operation(PineEnums.Command command, int address, long value) { }
+}
@@ -1,14 +1,19 @@
 package pinej;
 
-import pinej.internal.PineAccessorImpl;
-import jdk.incubator.foreign.CLinker;
 import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Supplier;
+import java.util.OptionalInt;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.IntStream;
 
 /**
@@ -17,6 +22,11 @@ import java.util.stream.IntStream;
 public class PineClient implements AutoCloseable {
     private static final int STATE_SLOTS = 4;
 
+    /**
+     * Time after which cached game information is checked against the ID of the running game.
+     */
+    private static final long GAME_INFO_CHECK_NANOS = Duration.ofSeconds(1).toNanos();
+
     private final PineAccessor pineAccessor;
 
     private final MemoryAddress ipcStruct;
@@ -27,8 +37,18 @@ public class PineClient implements AutoCloseable {
 
     private final PineEnums.TargetPlatform target;
 
+    private volatile GameInfo gameInfo;
+
+    private volatile long gameInfoChecked;
+
+    private volatile ReadCache readCache;
+
     public PineClient(Path path, PineEnums.TargetPlatform targetPlatform) {
-        this.pineAccessor = new PineAccessorImpl(path);
+        this(PineAccessor.ofLibrary(path), targetPlatform);
+    }
+
+    public PineClient(PineAccessor pineAccessor, PineEnums.TargetPlatform targetPlatform) {
+        this.pineAccessor = pineAccessor;
         this.target = targetPlatform ;
         ipcStruct = switch (target) {
             case PS2 -> pineAccessor.allocatePS2();
@@ -37,16 +57,37 @@ public class PineClient implements AutoCloseable {
         checkError("Allocate");
     }
 
-    private String toString(MemoryAddress address) {
-        String s = CLinker.toJavaString(address);
-        pineAccessor.freeDataStream(address);
-        return s;
+    /**
+     * Creates a client for the emulator listening in the given slot, for running multiple instances side by side.
+     *
+     * @throws UnsupportedOperationException if the accessor can not connect to the slot.
+     */
+    public PineClient(PineAccessor pineAccessor, PineEnums.TargetPlatform targetPlatform, int slot) {
+        this.pineAccessor = pineAccessor;
+        this.target = targetPlatform;
+        ipcStruct = pineAccessor.allocate(targetPlatform, slot);
+        checkError("Allocate");
+    }
+
+    PineAccessor accessor() {
+        return pineAccessor;
+    }
+
+    MemoryAddress ipc() {
+        return ipcStruct;
+    }
+
+    String toString(MemoryAddress address) {
+        return pineAccessor.toJavaString(address);
     }
 
     public PineEnums.Status getStatus() {
         PineEnums.Status from = PineEnums.Status.from(pineAccessor.emuStatus(ipcStruct, (byte) 0));
         if (getError() != PineEnums.Error.SUCCESS) {
-            return PineEnums.Status.ERROR;
+            from = PineEnums.Status.ERROR;
+        }
+        if (from == PineEnums.Status.SHUTDOWN || from == PineEnums.Status.ERROR) {
+            gameInfo = null;
         }
         return from;
     }
@@ -59,25 +100,105 @@ public class PineClient implements AutoCloseable {
         return states[i];
     }
 
+    /**
+     * @return New empty batch for sending multiple commands in a single IPC message.
+     */
+    public PineBatch batch() {
+        return new PineBatch(this);
+    }
+
+    /**
+     * Returns the information of the running game. The information is cached after the first successful fetch and
+     * dropped when {@link #getStatus()} reports the emulator as shut down or unreachable. Once the cached information is
+     * older than a second, the next call fetches only the game ID, and fetches the full information again if the ID has
+     * changed. Repeated calls while a game is running thus make at most one small IPC call per second. A game swapped
+     * for one with the same ID is not detected, {@link #refreshGameInfo()} always fetches the full information.
+     *
+     * @return Game information, or empty if it could not be fetched.
+     */
     public Optional<GameInfo> getGameInfo() {
-        List<Supplier<MemoryAddress>> functions = List.of(
-                () -> pineAccessor.getGameTitle(ipcStruct, (byte) 0),
-                () -> pineAccessor.getGameId(ipcStruct, (byte) 0),
-                () -> pineAccessor.getGameUuid(ipcStruct, (byte) 0),
-                () -> pineAccessor.getGameVersion(ipcStruct, (byte) 0));
-        List<String> strings = new ArrayList<>(4);
-        for (Supplier<MemoryAddress> function : functions) {
-            MemoryAddress a = function.get();
+        GameInfo info = gameInfo;
+        if (info == null) {
+            return refreshGameInfo();
+        }
+        if (System.nanoTime() - gameInfoChecked < GAME_INFO_CHECK_NANOS) {
+            return Optional.of(info);
+        }
+        MemoryAddress id = pineAccessor.getGameId(ipcStruct, (byte) 0);
+        if (getError() != PineEnums.Error.SUCCESS) {
+            gameInfo = null;
+            return Optional.empty();
+        }
+        if (!toString(id).equals(info.id())) {
+            return refreshGameInfo();
+        }
+        gameInfoChecked = System.nanoTime();
+        return Optional.of(info);
+    }
+
+    /**
+     * Fetches the information of the running game in a single batch, replacing the cached information.
+     *
+     * @return Game information, or empty if it could not be fetched.
+     */
+    public Optional<GameInfo> refreshGameInfo() {
+        pineAccessor.initializeBatch(ipcStruct);
+        pineAccessor.getGameTitle(ipcStruct, (byte) 1);
+        pineAccessor.getGameId(ipcStruct, (byte) 1);
+        pineAccessor.getGameUuid(ipcStruct, (byte) 1);
+        pineAccessor.getGameVersion(ipcStruct, (byte) 1);
+        int cmd = pineAccessor.finalizeBatch(ipcStruct);
+        try {
+            pineAccessor.sendCommand(ipcStruct, cmd);
             if (getError() != PineEnums.Error.SUCCESS) {
+                gameInfo = null;
                 return Optional.empty();
             }
-            strings.add(toString(a));
+            GameInfo info = new GameInfo(
+                    replyString(cmd, 0, PineEnums.Command.GAME_TITLE),
+                    replyString(cmd, 1, PineEnums.Command.GAME_ID),
+                    replyString(cmd, 2, PineEnums.Command.GAME_UUID),
+                    replyString(cmd, 3, PineEnums.Command.GAME_VERSION));
+            GameInfo previous = gameInfo;
+            gameInfo = info.equals(previous) ? previous : info;
+            gameInfoChecked = System.nanoTime();
+            return Optional.of(gameInfo);
+        } finally {
+            pineAccessor.freeBatchCommand(cmd);
         }
-        return Optional.of(new GameInfo(strings.get(0), strings.get(1), strings.get(2), strings.get(3)));
+    }
+
+    private String replyString(int cmd, int place, PineEnums.Command command) {
+        return toString(pineAccessor.getReplyString(ipcStruct, cmd, place, command.toByte()));
+    }
+
+    /**
+     * Installs a cache serving repeated scalar reads, or removes the cache with null.
+     */
+    public void setReadCache(ReadCache readCache) {
+        this.readCache = readCache;
     }
 
     private long read(int address, PineEnums.Command command) {
-        return pineAccessor.read(ipcStruct, address, command.toByte(), (byte) 0);
+        ReadCache cache = readCache;
+        if (cache != null) {
+            return cache.read(this, address, command.toByte());
+        }
+        return readUncached(address, command.toByte());
+    }
+
+    long readUncached(int address, byte command) {
+        return pineAccessor.read(ipcStruct, address, command, (byte) 0);
+    }
+
+    /**
+     * Drops cached reads overlapping a range written by other means than the scalar writes.
+     */
+    void invalidate(int address, int length) {
+        ReadCache cache = readCache;
+        if (cache != null) {
+            cache.invalidate(address, length);
+        }
     }
 
     public byte readByte(int address) {
@@ -104,8 +225,208 @@ public class PineClient implements AutoCloseable {
         return Double.longBitsToDouble(read(address, PineEnums.Command.READ_64));
     }
 
+    /**
+     * @return Byte order of the memory of the target platform.
+     */
+    public ByteOrder byteOrder() {
+        return switch (target) {
+            case PS2 -> ByteOrder.LITTLE_ENDIAN;
+            case PS3 -> ByteOrder.BIG_ENDIAN;
+        };
+    }
+
+    /**
+     * Reads a range of memory using as few batched IPC messages as possible.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public byte[] readBytes(int address, int length) {
+        byte[] bytes = new byte[length];
+        readBytes(address, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Fills the remaining bytes of the buffer from memory starting at the address and advances its position.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void readBytes(int address, ByteBuffer dst) {
+        ByteBuffer ordered = dst.duplicate().order(byteOrder());
+        BulkAccess.read(this, address, ordered);
+        dst.position(ordered.position());
+    }
+
+    /**
+     * Fills the whole segment from memory starting at the address.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void readBytes(int address, MemorySegment dst) {
+        BulkAccess.read(this, address, dst.asByteBuffer().order(byteOrder()));
+    }
+
+    /**
+     * Writes the bytes to memory starting at the address using as few batched IPC messages as possible.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void writeBytes(int address, byte[] src) {
+        writeBytes(address, ByteBuffer.wrap(src));
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer to memory starting at the address and advances its position.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void writeBytes(int address, ByteBuffer src) {
+        ByteBuffer ordered = src.duplicate().order(byteOrder());
+        BulkAccess.write(this, address, ordered);
+        src.position(ordered.position());
+    }
+
+    /**
+     * Writes the whole segment to memory starting at the address.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void writeBytes(int address, MemorySegment src) {
+        BulkAccess.write(this, address, src.asByteBuffer().order(byteOrder()));
+    }
+
+    /**
+     * @return New buffer which collects scalar writes and sends them merged on flush.
+     */
+    public WriteCombiningBuffer writeCombiningBuffer() {
+        return new WriteCombiningBuffer(this);
+    }
+
+    /**
+     * Reads a table of structures into a buffer which can be accessed without allocating per element.
+     *
+     * @param base Address of the first element.
+     * @param stride Distance between the starts of consecutive elements.
+     * @param count Number of elements.
+     * @param elementSize Number of bytes read from the start of each element.
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public StructTable readTable(int base, int stride, int count, int elementSize) {
+        StructTable table = new StructTable(this, base, stride, count, elementSize);
+        table.refresh();
+        return table;
+    }
+
+    /**
+     * Reads a table of structures and decodes every element into a record.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public <R extends Record> List<R> readStructs(StructMapping<R> mapping, int base, int stride, int count) {
+        StructTable table = readTable(base, stride, count, mapping.size());
+        List<R> structs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            structs.add(table.get(i, mapping));
+        }
+        return structs;
+    }
+
+    /**
+     * Reads a single structure and decodes it into a record.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public <R extends Record> R readStruct(StructMapping<R> mapping, int address) {
+        return readTable(address, mapping.size(), 1, mapping.size()).get(0, mapping);
+    }
+
+    /**
+     * @return New scanner searching values in the region, filtering on the common fork-join pool.
+     */
+    public MemoryScanner scanner(MemoryScanner.ValueType type, int start, int length) {
+        return scanner(type, start, length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return New scanner searching values in the region, filtering on the given pool.
+     */
+    public MemoryScanner scanner(MemoryScanner.ValueType type, int start, int length, ForkJoinPool pool) {
+        return new MemoryScanner(this, type, start, length, pool);
+    }
+
+    /**
+     * Creates a trace file and a recorder appending the regions to it on every tick.
+     *
+     * @param keyframeInterval Number of frames between frames stored in full.
+     * @throws IOException if the trace file can not be created.
+     */
+    public TraceRecorder traceRecorder(Path file, List<TraceRecorder.Region> regions, int keyframeInterval)
+            throws IOException {
+        return new TraceRecorder(this, file, regions, keyframeInterval);
+    }
+
+    /**
+     * @return New streams of memory values, delivering signals on the common fork-join pool.
+     */
+    public MemoryStreams streams() {
+        return streams(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @return New streams of memory values, delivering signals on the given executor.
+     */
+    public MemoryStreams streams(Executor executor) {
+        return new MemoryStreams(this, executor);
+    }
+
+    /**
+     * Creates a scheduler running the task once per frame, detecting frames by the 32-bit counter at the address.
+     *
+     * @param nominalPeriod Expected duration of a frame, refined while the counter advances.
+     */
+    public FrameScheduler frameScheduler(int counterAddress, Duration nominalPeriod, FrameScheduler.FrameTask task) {
+        return new FrameScheduler(this, true, counterAddress, nominalPeriod, task);
+    }
+
+    /**
+     * Creates a scheduler running the task at the nominal frame rate while the emulator is running.
+     */
+    public FrameScheduler frameScheduler(Duration nominalPeriod, FrameScheduler.FrameTask task) {
+        return new FrameScheduler(this, false, 0, nominalPeriod, task);
+    }
+
+    /**
+     * @return New resolver for pointer chains which caches the pointers read through this client.
+     */
+    public PointerResolver pointerResolver() {
+        return new PointerResolver(this);
+    }
+
+    /**
+     * Resolves a single chain without caching, reading one pointer per level.
+     *
+     * @return Address the chain points to, or empty if a pointer along the chain is null.
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public OptionalInt resolve(PointerChain chain) {
+        PointerResolver resolver = pointerResolver();
+        PointerResolver.Entry entry = resolver.register(chain);
+        resolver.refresh();
+        return entry.isValid() ? OptionalInt.of(entry.address()) : OptionalInt.empty();
+    }
+
     private void write(int address, long value, PineEnums.Command command) {
         pineAccessor.write(ipcStruct, address, value, command.toByte(), (byte) 0);
+        ReadCache cache = readCache;
+        if (cache != null) {
+            int width = BulkAccess.commandWidth(command.toByte());
+            if (getError() == PineEnums.Error.SUCCESS) {
+                cache.written(address, value, width, byteOrder());
+            } else {
+                // The emulator may or may not have applied a failed write.
+                cache.invalidate(address, width);
+            }
+        }
     }
 
     public void write(int address, byte value) {
@@ -160,7 +481,7 @@ public class PineClient implements AutoCloseable {
         }
     }
 
-    private void checkError(String function) {
+    void checkError(String function) {
         PineEnums.Error error = getError();
         if (error != PineEnums.Error.SUCCESS) {
             throw new IllegalStateException("Command failed! Function: %s Error: %s".formatted(function, error));
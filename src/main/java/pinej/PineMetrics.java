@@ -0,0 +1,58 @@
+package pinej;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics collected by {@link MetricsPineAccessor}.
+ *
+ * @param commands Statistics per command. Commands queued into a batch are counted, but their latency is part of the
+ *                 batch.
+ * @param batches Statistics of sent batches.
+ * @param errors Number of failed batches and unbatched commands, per error.
+ */
+public record PineMetrics(Map<PineEnums.Command, Latency> commands, Latency batches, Map<PineEnums.Error, Long> errors) {
+
+    /**
+     * Call counts and latency histogram. Bucket {@code i} counts calls which took less than {@code 2^i} nanoseconds but
+     * at least {@code 2^(i-1)}.
+     *
+     * @param count Number of calls, including batched calls without a latency of their own.
+     * @param timed Number of calls with a measured latency.
+     * @param totalNanos Sum of the measured latencies.
+     * @param buckets Latency histogram with power of two buckets.
+     */
+    public record Latency(long count, long timed, long totalNanos, long[] buckets) {
+
+        public Latency {
+            buckets = buckets.clone();
+        }
+
+        /**
+         * @return Copy of the latency histogram.
+         */
+        @Override
+        public long[] buckets() {
+            return buckets.clone();
+        }
+
+        public double meanNanos() {
+            return timed == 0 ? 0 : (double) totalNanos / timed;
+        }
+
+        /**
+         * @param percentile Percentile between 0 and 100.
+         * @return Upper bound of the histogram bucket containing the percentile, in nanoseconds.
+         */
+        public long percentileNanos(double percentile) {
+            long target = (long) Math.ceil(timed * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return i == 63 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pinej;
+
+import java.util.Arrays;
+
+/**
+ * Multi-level pointer path to a value in emulator memory.
+ * <p>
+ * Resolving starts from the base address. For every offset, the 32-bit pointer at the current address is read and the
+ * offset is added to it. For example {@code PointerChain.of(base, 0x10, 0x48)} points to {@code [[base] + 0x10] + 0x48}.
+ * A chain without offsets points to the base address itself.
+ */
+public final class PointerChain {
+    private final int base;
+
+    private final int[] offsets;
+
+    private PointerChain(int base, int[] offsets) {
+        this.base = base;
+        this.offsets = offsets;
+    }
+
+    public static PointerChain of(int base, int... offsets) {
+        return new PointerChain(base, offsets.clone());
+    }
+
+    public int base() {
+        return base;
+    }
+
+    public int[] offsets() {
+        return offsets.clone();
+    }
+
+    /**
+     * @return Number of pointers read while resolving the chain.
+     */
+    public int depth() {
+        return offsets.length;
+    }
+
+    int offset(int level) {
+        return offsets[level];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PointerChain other && base == other.base && Arrays.equals(offsets, other.offsets);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * base + Arrays.hashCode(offsets);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("0x").append(Integer.toHexString(base));
+        for (int offset : offsets) {
+            builder.append(" -> ").append(offset < 0 ? "-0x" : "+0x").append(Integer.toHexString(Math.abs(offset)));
+        }
+        return builder.toString();
+    }
+}
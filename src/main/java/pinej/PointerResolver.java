@@ -0,0 +1,238 @@
+package pinej;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves registered {@link PointerChain}s and caches the pointers read along the way.
+ * <p>
+ * Chains with a common prefix share the cached pointers of that prefix. Resolving reads the pointers level by level,
+ * all pointers of one level in a single batch, so the number of IPC messages depends on the depth of the deepest
+ * chain instead of the number of chains. {@link #validate()} is meant to be called once per tick: it re-reads only the
+ * root pointers and follows a chain further only where a pointer above it has changed, so pointers below an unchanged
+ * root are assumed to be unchanged too. Use {@link #refresh()} when intermediate structures may move on their own.
+ * Instances are not thread safe.
+ */
+public class PointerResolver {
+    private static final byte READ_POINTER = PineEnums.Command.READ_32.toByte();
+    private static final int INITIAL_NODES = 16;
+
+    private final PineClient client;
+
+    private final Map<Long, Integer> nodeIndex = new HashMap<>();
+
+    private final Map<PointerChain, Entry> entries = new HashMap<>();
+
+    // Every node is one pointer read: roots read the base address, others the parent pointer plus the offset.
+    private int[] parents = new int[INITIAL_NODES];
+    private int[] offsets = new int[INITIAL_NODES];
+    private int[] pointers = new int[INITIAL_NODES];
+    private boolean[] valid = new boolean[INITIAL_NODES];
+    private boolean[] changed = new boolean[INITIAL_NODES];
+    private int nodeCount;
+
+    private int[][] levels = new int[0][];
+    private int[] levelSizes = new int[0];
+
+    private int[] addresses = new int[INITIAL_NODES];
+    private byte[] commands = new byte[INITIAL_NODES];
+    private long[] values = new long[INITIAL_NODES];
+    private int[] reading = new int[INITIAL_NODES];
+
+    private boolean resolved;
+
+    PointerResolver(PineClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Registers the chain for resolving. Registering the same chain again returns the existing entry.
+     * The chain is resolved on the next {@link #refresh()} or {@link #validate()}.
+     */
+    public Entry register(PointerChain chain) {
+        Entry existing = entries.get(chain);
+        if (existing != null) {
+            return existing;
+        }
+        int node = -1;
+        for (int level = 0; level < chain.depth(); level++) {
+            node = node(node, level == 0 ? chain.base() : chain.offset(level - 1), level);
+        }
+        Entry entry = new Entry(chain, node, chain.depth() == 0 ? chain.base() : chain.offset(chain.depth() - 1));
+        entries.put(chain, entry);
+        resolved = false;
+        return entry;
+    }
+
+    public Entry register(int base, int... offsets) {
+        return register(PointerChain.of(base, offsets));
+    }
+
+    /**
+     * @return Number of distinct pointers read to resolve all registered chains.
+     */
+    public int pointerCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Reads every pointer of every registered chain again, one batch per level.
+     *
+     * @throws IllegalStateException if the emulator reports an error. The chains are then invalid until the next
+     *                               refresh or validation, which reads every pointer again.
+     */
+    public void refresh() {
+        // Set only after a complete pass, as a failure leaves the levels below the failed one out of date.
+        resolved = false;
+        resolve(false);
+        resolved = true;
+    }
+
+    /**
+     * Re-reads the root pointers in one batch and follows the chains further only below pointers that have changed.
+     * Resolves everything if chains were registered since the last refresh.
+     *
+     * @return True if any cached pointer changed.
+     * @throws IllegalStateException if the emulator reports an error. The chains are then invalid until the next
+     *                               refresh or validation, which reads every pointer again.
+     */
+    public boolean validate() {
+        if (!resolved) {
+            refresh();
+            return true;
+        }
+        resolved = false;
+        boolean any = resolve(true);
+        resolved = true;
+        return any;
+    }
+
+    private boolean resolve(boolean onlyChanged) {
+        boolean any = false;
+        for (int level = 0; level < levels.length; level++) {
+            int[] nodes = levels[level];
+            int count = 0;
+            for (int i = 0; i < levelSizes[level]; i++) {
+                int node = nodes[i];
+                int parent = parents[node];
+                if (parent < 0) {
+                    queue(count++, node, offsets[node]);
+                } else if (!valid[parent] || pointers[parent] == 0) {
+                    changed[node] = valid[node];
+                    valid[node] = false;
+                } else if (onlyChanged && !changed[parent]) {
+                    changed[node] = false;
+                } else {
+                    queue(count++, node, pointers[parent] + offsets[node]);
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            BulkAccess.read(client, addresses, commands, values, count);
+            for (int i = 0; i < count; i++) {
+                int node = reading[i];
+                int pointer = (int) values[i];
+                changed[node] = !valid[node] || pointers[node] != pointer;
+                pointers[node] = pointer;
+                valid[node] = true;
+                any |= changed[node];
+            }
+        }
+        return any;
+    }
+
+    private void queue(int index, int node, int address) {
+        addresses[index] = address;
+        commands[index] = READ_POINTER;
+        reading[index] = node;
+    }
+
+    private int node(int parent, int offset, int level) {
+        long key = ((long) parent << 32) | Integer.toUnsignedLong(offset);
+        Integer existing = nodeIndex.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int node = nodeCount++;
+        if (node == parents.length) {
+            int size = node * 2;
+            parents = Arrays.copyOf(parents, size);
+            offsets = Arrays.copyOf(offsets, size);
+            pointers = Arrays.copyOf(pointers, size);
+            valid = Arrays.copyOf(valid, size);
+            changed = Arrays.copyOf(changed, size);
+        }
+        parents[node] = parent;
+        offsets[node] = offset;
+        nodeIndex.put(key, node);
+
+        if (level == levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            levelSizes = Arrays.copyOf(levelSizes, level + 1);
+            levels[level] = new int[INITIAL_NODES];
+        }
+        if (levelSizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levelSizes[level] * 2);
+        }
+        levels[level][levelSizes[level]++] = node;
+        if (levelSizes[level] > addresses.length) {
+            int size = levelSizes[level] * 2;
+            addresses = Arrays.copyOf(addresses, size);
+            commands = Arrays.copyOf(commands, size);
+            values = Arrays.copyOf(values, size);
+            reading = Arrays.copyOf(reading, size);
+        }
+        return node;
+    }
+
+    /**
+     * Registered chain and its cached resolution.
+     */
+    public class Entry {
+        private final PointerChain chain;
+
+        private final int node;
+
+        private final int offset;
+
+        private Entry(PointerChain chain, int node, int offset) {
+            this.chain = chain;
+            this.node = node;
+            this.offset = offset;
+        }
+
+        public PointerChain chain() {
+            return chain;
+        }
+
+        /**
+         * @return True if every pointer of the chain was read and none of them was null.
+         */
+        public boolean isValid() {
+            return node < 0 || (resolved && valid[node] && pointers[node] != 0);
+        }
+
+        /**
+         * @return True if the last pointer of the chain changed in the latest refresh or validation.
+         */
+        public boolean hasChanged() {
+            return node >= 0 && changed[node];
+        }
+
+        /**
+         * @return Address the chain points to, using the cached pointers.
+         * @throws IllegalStateException if the chain is not valid.
+         */
+        public int address() {
+            if (node < 0) {
+                return offset;
+            }
+            if (!isValid()) {
+                throw new IllegalStateException("Pointer chain is not resolved: " + chain);
+            }
+            return pointers[node] + offset;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package pinej;
+
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Opt-in cache for the scalar reads of a {@link PineClient}, installed with {@link PineClient#setReadCache}.
+ * <p>
+ * Memory is cached in aligned 8-byte words: a missed read fetches the whole word containing it, so later reads of any
+ * value overlapping the word are served without IPC. Reads crossing a word boundary bypass the cache. Entries are
+ * valid until the next {@link #tick()}, or for a fixed time to live. Scalar writes through the client update the
+ * cached words, and all other writes through the client, its batches and bulk operations drop the words they touch
+ * once they have been sent. A word read while a write or invalidation happened is returned but not cached, so a read
+ * racing with a write never caches the value from before the write. Changes made by the game are only seen once the
+ * entries expire. Words are kept in an open-addressing table of primitive arrays.
+ */
+public final class ReadCache {
+    private static final int EMPTY = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long ttl;
+
+    private final int maxCapacity;
+
+    private int[] keys;
+    private long[] words;
+    private long[] stamps;
+    private int mask;
+    private int size;
+
+    private long generation;
+
+    /**
+     * Number of writes, invalidations and clears, for detecting those made while a missed word is being read.
+     */
+    private long modifications;
+
+    private long hits;
+    private long misses;
+    private long bypasses;
+    private long updates;
+    private long invalidations;
+
+    private ReadCache(long ttl, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache needs room for entries: " + maxEntries);
+        }
+        this.ttl = ttl;
+        int capacity = Integer.highestOneBit(Math.min(maxEntries, 1 << 29)) * 2;
+        this.maxCapacity = Math.max(capacity, INITIAL_CAPACITY);
+        allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    /**
+     * Creates a cache whose entries are valid until the next {@link #tick()}.
+     *
+     * @param maxEntries Number of 8-byte words the cache is sized for.
+     */
+    public static ReadCache perTick(int maxEntries) {
+        return new ReadCache(0, maxEntries);
+    }
+
+    /**
+     * Creates a cache whose entries are valid for a fixed time after they were read.
+     *
+     * @param maxEntries Number of 8-byte words the cache is sized for.
+     */
+    public static ReadCache withTtl(Duration ttl, int maxEntries) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Time to live must be positive: " + ttl);
+        }
+        return new ReadCache(ttl.toNanos(), maxEntries);
+    }
+
+    /**
+     * Expires all entries, usually called once per frame before the frame's reads.
+     */
+    public synchronized void tick() {
+        generation++;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        modifications++;
+    }
+
+    /**
+     * @return Counters since the cache was created or the statistics were reset.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, bypasses, updates, invalidations, size);
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        bypasses = 0;
+        updates = 0;
+        invalidations = 0;
+    }
+
+    /**
+     * Reads a value through the cache.
+     *
+     * @param command Read command, which determines the width of the value.
+     * @return Value in the low bits, to be truncated by the caller.
+     */
+    long read(PineClient client, int address, byte command) {
+        int width = BulkAccess.commandWidth(command);
+        int offset = address & 7;
+        if (offset + width > 8) {
+            synchronized (this) {
+                bypasses++;
+            }
+            return client.readUncached(address, command);
+        }
+        int key = address >>> 3;
+        ByteOrder order = client.byteOrder();
+        long modified;
+        synchronized (this) {
+            int slot = find(key);
+            if (slot >= 0 && isValid(slot)) {
+                hits++;
+                return extract(words[slot], offset, width, order);
+            }
+            misses++;
+            modified = modifications;
+        }
+        long word = client.readUncached(address & ~7, PineEnums.Command.READ_64.toByte());
+        if (client.getError() != PineEnums.Error.SUCCESS) {
+            // The reply of a failed read is not the memory contents.
+            return extract(word, offset, width, order);
+        }
+        synchronized (this) {
+            if (modifications == modified) {
+                put(key, word);
+            }
+        }
+        return extract(word, offset, width, order);
+    }
+
+    /**
+     * Updates the cached word with a value written through the client.
+     */
+    synchronized void written(int address, long value, int width, ByteOrder order) {
+        modifications++;
+        int offset = address & 7;
+        if (offset + width > 8) {
+            invalidate(address, width);
+            return;
+        }
+        int slot = find(address >>> 3);
+        if (slot >= 0) {
+            int shift = shift(offset, width, order);
+            long bits = width == 8 ? -1L : (1L << (width * 8)) - 1;
+            words[slot] = (words[slot] & ~(bits << shift)) | ((value & bits) << shift);
+            updates++;
+        }
+    }
+
+    /**
+     * Drops the cached words overlapping a range which has been written.
+     */
+    synchronized void invalidate(int address, int length) {
+        modifications++;
+        long first = Integer.toUnsignedLong(address) >>> 3;
+        long last = (Integer.toUnsignedLong(address) + Math.max(length, 1) - 1) >>> 3;
+        for (long key = first; key <= last; key++) {
+            int slot = find((int) key);
+            if (slot >= 0) {
+                removeAt(slot);
+                invalidations++;
+            }
+        }
+    }
+
+    private boolean isValid(int slot) {
+        return isValid(stamps, slot);
+    }
+
+    private long stamp() {
+        return ttl == 0 ? generation : System.nanoTime();
+    }
+
+    private int find(int key) {
+        for (int slot = hash(key); ; slot = (slot + 1) & mask) {
+            int k = keys[slot];
+            if (k == key) {
+                return slot;
+            } else if (k == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void put(int key, long word) {
+        int slot = find(key);
+        if (slot < 0) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                rebuild();
+            }
+            slot = hash(key);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            size++;
+        }
+        words[slot] = word;
+        stamps[slot] = stamp();
+    }
+
+    /**
+     * Drops expired entries, then grows the table if it is still over half full, or clears it at full capacity.
+     */
+    private void rebuild() {
+        int[] oldKeys = keys;
+        long[] oldWords = words;
+        long[] oldStamps = stamps;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && isValid(oldStamps, i)) {
+                live++;
+            }
+        }
+        int capacity = oldKeys.length;
+        if (live * 2 > capacity) {
+            if (capacity == maxCapacity) {
+                clear();
+                return;
+            }
+            capacity *= 2;
+        }
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && isValid(oldStamps, i)) {
+                int slot = hash(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                words[slot] = oldWords[i];
+                stamps[slot] = oldStamps[i];
+                size++;
+            }
+        }
+    }
+
+    private boolean isValid(long[] stamps, int slot) {
+        return ttl == 0 ? stamps[slot] == generation : System.nanoTime() - stamps[slot] < ttl;
+    }
+
+    /**
+     * Removes the entry and shifts back the entries of its probe sequence, so lookups need no tombstones.
+     */
+    private void removeAt(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]);
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                keys[hole] = keys[next];
+                words[hole] = words[next];
+                stamps[hole] = stamps[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        words = new long[capacity];
+        stamps = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int hash(int key) {
+        return (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length));
+    }
+
+    private static long extract(long word, int offset, int width, ByteOrder order) {
+        long value = word >>> shift(offset, width, order);
+        return width == 8 ? value : value & ((1L << (width * 8)) - 1);
+    }
+
+    /**
+     * @return Bit position of the value within the word as read with a 64-bit command.
+     */
+    private static int shift(int offset, int width, ByteOrder order) {
+        return 8 * (order == ByteOrder.LITTLE_ENDIAN ? offset : 8 - offset - width);
+    }
+
+    /**
+     * @param hits Reads served from the cache.
+     * @param misses Reads which fetched their word from the emulator.
+     * @param bypasses Reads crossing a word boundary, which were not cached.
+     * @param updates Cached words updated by writes.
+     * @param invalidations Cached words dropped by writes.
+     * @param size Number of entries, including expired ones not yet dropped.
+     */
+    public record Stats(long hits, long misses, long bypasses, long updates, long invalidations, int size) {
+        /**
+         * @return Fraction of cacheable reads served from the cache.
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Accessor decorator which logs every call with its arguments and result into a compact binary file for
+ * {@link ReplayPineAccessor}.
+ * <p>
+ * Error codes and strings are logged as the client reads them through {@link #getError(MemoryAddress)} and
+ * {@link #toJavaString(MemoryAddress)}. Calls are serialized so the log has a single order; calls which throw are not
+ * logged. Batches are logged when the delegate has initialized them, so waiting for the batch of another thread does
+ * not block the other calls. The log is buffered, so it is complete only after {@link #flush()} or {@link #close()}.
+ */
+public class RecordingPineAccessor implements PineAccessor, AutoCloseable {
+    private final PineAccessor delegate;
+
+    private final AccessorLog.Writer log;
+
+    /**
+     * @param delegate Accessor to forward the calls to.
+     * @param file Log file to create or overwrite.
+     * @throws IOException if the log file can not be created.
+     */
+    public RecordingPineAccessor(PineAccessor delegate, Path file) throws IOException {
+        this.delegate = delegate;
+        this.log = new AccessorLog.Writer(file);
+    }
+
+    /**
+     * Writes the buffered calls to the log file.
+     *
+     * @throws UncheckedIOException if writing fails.
+     */
+    public synchronized void flush() {
+        log.flush();
+    }
+
+    /**
+     * Writes the buffered calls and closes the log file. The delegate is not closed.
+     *
+     * @throws UncheckedIOException if writing fails.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized MemoryAddress allocatePS2() {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.allocatePS2();
+        log.begin(AccessorLog.ALLOCATE_PS2, start).ipc(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress allocatePS3() {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.allocatePS3();
+        log.begin(AccessorLog.ALLOCATE_PS3, start).ipc(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress allocate(PineEnums.TargetPlatform platform, int slot) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.allocate(platform, slot);
+        log.begin(AccessorLog.ALLOCATE, start).putByte((byte) platform.ordinal()).putInt(slot).ipc(result);
+        return result;
+    }
+
+    @Override
+    public void initializeBatch(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        // Outside the monitor, as the delegate may wait for the batch of another thread to be finalized.
+        delegate.initializeBatch(ipc);
+        synchronized (this) {
+            log.begin(AccessorLog.INITIALIZE_BATCH, start).ipc(ipc);
+        }
+    }
+
+    @Override
+    public synchronized void freeDataStream(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        delegate.freeDataStream(ipc);
+        log.begin(AccessorLog.FREE_DATA_STREAM, start);
+    }
+
+    @Override
+    public synchronized int finalizeBatch(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        int result = delegate.finalizeBatch(ipc);
+        log.begin(AccessorLog.FINALIZE_BATCH, start).ipc(ipc).putInt(result);
+        return result;
+    }
+
+    @Override
+    public synchronized long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
+        long start = System.nanoTime();
+        long result = delegate.getReply(ipc, cmd, place, command);
+        log.begin(AccessorLog.GET_REPLY, start).ipc(ipc).putInt(cmd).putInt(place).putByte(command).putLong(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getReplyString(ipc, cmd, place, command);
+        log.begin(AccessorLog.GET_REPLY_STRING, start).ipc(ipc).putInt(cmd).putInt(place).putByte(command).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized void sendCommand(MemoryAddress ipc, int command) {
+        long start = System.nanoTime();
+        delegate.sendCommand(ipc, command);
+        log.begin(AccessorLog.SEND_COMMAND, start).ipc(ipc).putInt(command);
+    }
+
+    @Override
+    public synchronized long read(MemoryAddress ipc, int address, byte command, byte batch) {
+        long start = System.nanoTime();
+        long result = delegate.read(ipc, address, command, batch);
+        log.begin(AccessorLog.READ, start).ipc(ipc).putInt(address).putByte(command).putByte(batch).putLong(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress version(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.version(ipc, batch);
+        log.begin(AccessorLog.VERSION_STRING, start).ipc(ipc).putByte(batch).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized int emuStatus(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        int result = delegate.emuStatus(ipc, batch);
+        log.begin(AccessorLog.EMU_STATUS, start).ipc(ipc).putByte(batch).putInt(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameTitle(ipc, batch);
+        log.begin(AccessorLog.GAME_TITLE, start).ipc(ipc).putByte(batch).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameId(ipc, batch);
+        log.begin(AccessorLog.GAME_ID, start).ipc(ipc).putByte(batch).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameUuid(ipc, batch);
+        log.begin(AccessorLog.GAME_UUID, start).ipc(ipc).putByte(batch).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
+        long start = System.nanoTime();
+        MemoryAddress result = delegate.getGameVersion(ipc, batch);
+        log.begin(AccessorLog.GAME_VERSION, start).ipc(ipc).putByte(batch).putString(result);
+        return result;
+    }
+
+    @Override
+    public synchronized void saveState(MemoryAddress ipc, byte slot, byte batch) {
+        long start = System.nanoTime();
+        delegate.saveState(ipc, slot, batch);
+        log.begin(AccessorLog.SAVE_STATE, start).ipc(ipc).putByte(slot).putByte(batch);
+    }
+
+    @Override
+    public synchronized void loadState(MemoryAddress ipc, byte slot, byte batch) {
+        long start = System.nanoTime();
+        delegate.loadState(ipc, slot, batch);
+        log.begin(AccessorLog.LOAD_STATE, start).ipc(ipc).putByte(slot).putByte(batch);
+    }
+
+    @Override
+    public synchronized void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
+        long start = System.nanoTime();
+        delegate.write(ipc, address, value, command, batch);
+        log.begin(AccessorLog.WRITE, start).ipc(ipc).putInt(address).putLong(value).putByte(command).putByte(batch);
+    }
+
+    @Override
+    public synchronized void deletePS2(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        delegate.deletePS2(ipc);
+        log.begin(AccessorLog.DELETE_PS2, start).ipc(ipc);
+    }
+
+    @Override
+    public synchronized void deletePS3(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        delegate.deletePS3(ipc);
+        log.begin(AccessorLog.DELETE_PS3, start).ipc(ipc);
+    }
+
+    @Override
+    public synchronized void freeBatchCommand(int cmd) {
+        long start = System.nanoTime();
+        delegate.freeBatchCommand(cmd);
+        log.begin(AccessorLog.FREE_BATCH_COMMAND, start).putInt(cmd);
+    }
+
+    @Override
+    public synchronized int getError(MemoryAddress ipc) {
+        long start = System.nanoTime();
+        int result = delegate.getError(ipc);
+        log.begin(AccessorLog.GET_ERROR, start).ipc(ipc).putInt(result);
+        return result;
+    }
+
+    @Override
+    public synchronized String toJavaString(MemoryAddress address) {
+        long start = System.nanoTime();
+        String result = delegate.toJavaString(address);
+        log.begin(AccessorLog.TO_JAVA_STRING, start).putString(result);
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accessor which serves the results logged by {@link RecordingPineAccessor} without an emulator.
+ * <p>
+ * Calls must arrive in the recorded order with the recorded arguments, IPC structures being identified by the order in
+ * which they were allocated. A call that differs from the log, or a call after the end of the log, throws an
+ * {@link IllegalStateException} naming the diverging call, after which the replay can not continue. Replay runs
+ * either as fast as possible or waits until each call is due according to the recorded timing.
+ */
+public class ReplayPineAccessor implements PineAccessor, AutoCloseable {
+    private static final long SPIN_NANOS = 100_000;
+
+    private final AccessorLog.Reader log;
+
+    private final Timing timing;
+
+    private final long startNanos = System.nanoTime();
+
+    public ReplayPineAccessor(Path file) throws IOException {
+        this(file, Timing.FULL_SPEED);
+    }
+
+    /**
+     * @throws IOException if the log file can not be opened or is not an accessor log.
+     */
+    public ReplayPineAccessor(Path file, Timing timing) throws IOException {
+        this.log = new AccessorLog.Reader(file);
+        this.timing = timing;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized MemoryAddress allocatePS2() {
+        pace(log.begin(AccessorLog.ALLOCATE_PS2));
+        return MemoryAddress.ofLong(log.getLong());
+    }
+
+    @Override
+    public synchronized MemoryAddress allocatePS3() {
+        pace(log.begin(AccessorLog.ALLOCATE_PS3));
+        return MemoryAddress.ofLong(log.getLong());
+    }
+
+    @Override
+    public synchronized MemoryAddress allocate(PineEnums.TargetPlatform platform, int slot) {
+        pace(log.begin(AccessorLog.ALLOCATE));
+        log.expectByte((byte) platform.ordinal());
+        log.expectInt(slot);
+        return MemoryAddress.ofLong(log.getLong());
+    }
+
+    @Override
+    public synchronized void initializeBatch(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.INITIALIZE_BATCH));
+        log.expectIpc(ipc);
+    }
+
+    @Override
+    public synchronized void freeDataStream(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.FREE_DATA_STREAM));
+    }
+
+    @Override
+    public synchronized int finalizeBatch(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.FINALIZE_BATCH));
+        log.expectIpc(ipc);
+        return log.getInt();
+    }
+
+    @Override
+    public synchronized long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
+        pace(log.begin(AccessorLog.GET_REPLY));
+        log.expectIpc(ipc);
+        log.expectInt(cmd);
+        log.expectInt(place);
+        log.expectByte(command);
+        return log.getLong();
+    }
+
+    @Override
+    public synchronized MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        pace(log.begin(AccessorLog.GET_REPLY_STRING));
+        log.expectIpc(ipc);
+        log.expectInt(cmd);
+        log.expectInt(place);
+        log.expectByte(command);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized void sendCommand(MemoryAddress ipc, int command) {
+        pace(log.begin(AccessorLog.SEND_COMMAND));
+        log.expectIpc(ipc);
+        log.expectInt(command);
+    }
+
+    @Override
+    public synchronized long read(MemoryAddress ipc, int address, byte command, byte batch) {
+        pace(log.begin(AccessorLog.READ));
+        log.expectIpc(ipc);
+        log.expectInt(address);
+        log.expectByte(command);
+        log.expectByte(batch);
+        return log.getLong();
+    }
+
+    @Override
+    public synchronized MemoryAddress version(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.VERSION_STRING));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized int emuStatus(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.EMU_STATUS));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getInt();
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.GAME_TITLE));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.GAME_ID));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.GAME_UUID));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
+        pace(log.begin(AccessorLog.GAME_VERSION));
+        log.expectIpc(ipc);
+        log.expectByte(batch);
+        return log.getStringHandle();
+    }
+
+    @Override
+    public synchronized void saveState(MemoryAddress ipc, byte slot, byte batch) {
+        pace(log.begin(AccessorLog.SAVE_STATE));
+        log.expectIpc(ipc);
+        log.expectByte(slot);
+        log.expectByte(batch);
+    }
+
+    @Override
+    public synchronized void loadState(MemoryAddress ipc, byte slot, byte batch) {
+        pace(log.begin(AccessorLog.LOAD_STATE));
+        log.expectIpc(ipc);
+        log.expectByte(slot);
+        log.expectByte(batch);
+    }
+
+    @Override
+    public synchronized void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
+        pace(log.begin(AccessorLog.WRITE));
+        log.expectIpc(ipc);
+        log.expectInt(address);
+        log.expectLong(value);
+        log.expectByte(command);
+        log.expectByte(batch);
+    }
+
+    @Override
+    public synchronized void deletePS2(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.DELETE_PS2));
+        log.expectIpc(ipc);
+    }
+
+    @Override
+    public synchronized void deletePS3(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.DELETE_PS3));
+        log.expectIpc(ipc);
+    }
+
+    @Override
+    public synchronized void freeBatchCommand(int cmd) {
+        pace(log.begin(AccessorLog.FREE_BATCH_COMMAND));
+        log.expectInt(cmd);
+    }
+
+    @Override
+    public synchronized int getError(MemoryAddress ipc) {
+        pace(log.begin(AccessorLog.GET_ERROR));
+        log.expectIpc(ipc);
+        return log.getInt();
+    }
+
+    @Override
+    public synchronized String toJavaString(MemoryAddress address) {
+        pace(log.begin(AccessorLog.TO_JAVA_STRING));
+        return log.getString();
+    }
+
+    private void pace(long recordedNanos) {
+        if (timing == Timing.FULL_SPEED) {
+            return;
+        }
+        long due = startNanos + recordedNanos;
+        for (long left = due - System.nanoTime(); left > 0; left = due - System.nanoTime()) {
+            if (left > SPIN_NANOS) {
+                LockSupport.parkNanos(left - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public enum Timing {
+        /**
+         * Serves every call immediately.
+         */
+        FULL_SPEED,
+        /**
+         * Delays every call until the time it was made at, relative to the start of the recording and the replay.
+         */
+        ORIGINAL
+    }
+}
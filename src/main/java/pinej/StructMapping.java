@@ -0,0 +1,148 @@
+package pinej;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+
+/**
+ * Mapping of a structure in emulator memory to a Java record.
+ * <p>
+ * Every component of the record is annotated with {@link Offset} giving its offset from the start of the structure.
+ * Supported component types are {@code byte}, {@code short}, {@code int}, {@code long}, {@code float},
+ * {@code double} and {@code boolean}, which is read as a byte.
+ *
+ * @param <R> Type of the record.
+ */
+public final class StructMapping<R extends Record> {
+
+    /**
+     * Offset of a record component from the start of the structure. Must not be negative.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.RECORD_COMPONENT)
+    public @interface Offset {
+        int value();
+    }
+
+    private final Class<R> type;
+
+    private final int[] offsets;
+
+    private final Class<?>[] types;
+
+    private final int size;
+
+    private final MethodHandle constructor;
+
+    private StructMapping(Class<R> type, int[] offsets, Class<?>[] types, int size, MethodHandle constructor) {
+        this.type = type;
+        this.offsets = offsets;
+        this.types = types;
+        this.size = size;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Creates a mapping for a public record in an exported package.
+     */
+    public static <R extends Record> StructMapping<R> of(Class<R> type) {
+        return of(MethodHandles.publicLookup(), type);
+    }
+
+    /**
+     * Creates a mapping using the given lookup to access the canonical constructor of the record.
+     */
+    public static <R extends Record> StructMapping<R> of(MethodHandles.Lookup lookup, Class<R> type) {
+        RecordComponent[] components = type.getRecordComponents();
+        if (components == null) {
+            throw new IllegalArgumentException(type + " is not a record");
+        }
+        int[] offsets = new int[components.length];
+        Class<?>[] types = new Class<?>[components.length];
+        int size = 0;
+        for (int i = 0; i < components.length; i++) {
+            Offset offset = components[i].getAnnotation(Offset.class);
+            if (offset == null) {
+                throw new IllegalArgumentException("Component " + components[i].getName() + " has no offset");
+            }
+            if (offset.value() < 0) {
+                throw new IllegalArgumentException("Component " + components[i].getName() + " has a negative offset");
+            }
+            offsets[i] = offset.value();
+            types[i] = components[i].getType();
+            size = Math.max(size, offsets[i] + width(types[i], components[i].getName()));
+        }
+        try {
+            MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class, types))
+                    .asSpreader(Object[].class, components.length);
+            return new StructMapping<>(type, offsets, types, size, constructor);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Can not access the constructor of " + type, e);
+        }
+    }
+
+    public Class<R> type() {
+        return type;
+    }
+
+    /**
+     * @return Number of bytes from the start of the structure to the end of the last field.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes a record from the buffer, which must be in the byte order of the target platform.
+     *
+     * @param offset Absolute offset of the start of the structure in the buffer.
+     */
+    public R decode(ByteBuffer buffer, int offset) {
+        Object[] values = new Object[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            int at = offset + offsets[i];
+            Class<?> t = types[i];
+            if (t == byte.class) {
+                values[i] = buffer.get(at);
+            } else if (t == boolean.class) {
+                values[i] = buffer.get(at) != 0;
+            } else if (t == short.class) {
+                values[i] = buffer.getShort(at);
+            } else if (t == int.class) {
+                values[i] = buffer.getInt(at);
+            } else if (t == long.class) {
+                values[i] = buffer.getLong(at);
+            } else if (t == float.class) {
+                values[i] = buffer.getFloat(at);
+            } else {
+                values[i] = buffer.getDouble(at);
+            }
+        }
+        try {
+            return type.cast(constructor.invoke(values));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create " + type, t);
+        }
+    }
+
+    private static int width(Class<?> type, String name) {
+        if (type == byte.class || type == boolean.class) {
+            return Byte.BYTES;
+        } else if (type == short.class) {
+            return Short.BYTES;
+        } else if (type == int.class || type == float.class) {
+            return Integer.BYTES;
+        } else if (type == long.class || type == double.class) {
+            return Long.BYTES;
+        }
+        throw new IllegalArgumentException("Unsupported type " + type + " of component " + name);
+    }
+}
@@ -0,0 +1,117 @@
+package pinej;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Copy of a table of equally sized structures in emulator memory, read in as few batches as possible.
+ * <p>
+ * Elements are accessed in place through the getters, so reading fields does not allocate an object per element.
+ * {@link #refresh()} reads the table again into the same buffer.
+ */
+public final class StructTable {
+    private final int base;
+
+    private final int stride;
+
+    private final int count;
+
+    private final int elementSize;
+
+    private final ByteBuffer data;
+
+    private final BulkAccess.Reads reads;
+
+    StructTable(PineClient client, int base, int stride, int count, int elementSize) {
+        if (count < 0 || elementSize <= 0 || stride < elementSize) {
+            throw new IllegalArgumentException("Invalid table: count %d, stride %d, element size %d"
+                    .formatted(count, stride, elementSize));
+        }
+        this.base = base;
+        this.stride = stride;
+        this.count = count;
+        this.elementSize = elementSize;
+        this.data = ByteBuffer.allocateDirect(Math.multiplyExact(count, elementSize)).order(client.byteOrder());
+        this.reads = new BulkAccess.Reads(client);
+    }
+
+    /**
+     * Reads the whole table from memory again.
+     *
+     * @throws IllegalStateException if the emulator reports an error.
+     */
+    public void refresh() {
+        if (stride == elementSize) {
+            reads.read(base, data, 0, data.capacity());
+        } else {
+            for (int i = 0; i < count; i++) {
+                reads.read(address(i), data, i * elementSize, elementSize);
+            }
+        }
+        reads.finish();
+    }
+
+    public int base() {
+        return base;
+    }
+
+    public int stride() {
+        return stride;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int elementSize() {
+        return elementSize;
+    }
+
+    /**
+     * @return Address of the element in emulator memory.
+     */
+    public int address(int index) {
+        return base + Objects.checkIndex(index, count) * stride;
+    }
+
+    public byte getByte(int index, int offset) {
+        return data.get(position(index, offset, Byte.BYTES));
+    }
+
+    public short getShort(int index, int offset) {
+        return data.getShort(position(index, offset, Short.BYTES));
+    }
+
+    public int getInt(int index, int offset) {
+        return data.getInt(position(index, offset, Integer.BYTES));
+    }
+
+    public long getLong(int index, int offset) {
+        return data.getLong(position(index, offset, Long.BYTES));
+    }
+
+    public float getFloat(int index, int offset) {
+        return data.getFloat(position(index, offset, Float.BYTES));
+    }
+
+    public double getDouble(int index, int offset) {
+        return data.getDouble(position(index, offset, Double.BYTES));
+    }
+
+    /**
+     * Decodes an element into a record.
+     */
+    public <R extends Record> R get(int index, StructMapping<R> mapping) {
+        if (mapping.size() > elementSize) {
+            throw new IllegalArgumentException("Mapping of %d bytes does not fit elements of %d bytes"
+                    .formatted(mapping.size(), elementSize));
+        }
+        return mapping.decode(data, Objects.checkIndex(index, count) * elementSize);
+    }
+
+    private int position(int index, int offset, int width) {
+        Objects.checkIndex(index, count);
+        Objects.checkFromIndexSize(offset, width, elementSize);
+        return index * elementSize + offset;
+    }
+}
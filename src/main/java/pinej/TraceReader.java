@@ -0,0 +1,234 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Random access reader for trace files written by {@link TraceRecorder}.
+ * <p>
+ * Opening the trace maps the file and indexes the frame headers without decoding any frames. A frame is decoded from
+ * the nearest keyframe before it, or from the previously decoded frame when that is closer: delta frames are XORs, so
+ * they can be applied backwards as well as forwards. Instances are not thread safe.
+ */
+public class TraceReader implements AutoCloseable {
+    private final ResourceScope scope = ResourceScope.newSharedScope();
+
+    private final MemorySegment data;
+
+    private final ByteOrder byteOrder;
+
+    private final int keyframeInterval;
+
+    private final List<TraceRecorder.Region> regions;
+
+    private final int[] regionOffsets;
+
+    private final int frameSize;
+
+    private long[] offsets = new long[1024];
+    private long[] timestamps = new long[1024];
+    private int[] keyframes = new int[1024];
+    private int frameCount;
+
+    private final ByteBuffer frame;
+
+    // Little-endian view of the frame, so XORed words are applied with their bytes in place.
+    private final ByteBuffer frameBytes;
+
+    private int decoded = -1;
+
+    private TraceReader(Path file) throws IOException {
+        long size = Files.size(file);
+        data = MemorySegment.mapFile(file, 0, size, FileChannel.MapMode.READ_ONLY, scope);
+        try {
+            if (size < TraceRecorder.headerSize(0) || getInt(0) != TraceRecorder.MAGIC) {
+                throw new IOException("Not a trace file: " + file);
+            }
+            if (getInt(4) != TraceRecorder.VERSION) {
+                throw new IOException("Unsupported trace version " + getInt(4));
+            }
+            byteOrder = MemoryAccess.getByteAtOffset(data, 8) == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            keyframeInterval = getInt(9);
+            int regionCount = getInt(13);
+            long header = TraceRecorder.headerSize(regionCount);
+            if (regionCount <= 0 || header > size) {
+                throw new IOException("Corrupted trace header in " + file);
+            }
+            List<TraceRecorder.Region> list = new ArrayList<>(regionCount);
+            regionOffsets = new int[regionCount];
+            int total = 0;
+            for (int i = 0; i < regionCount; i++) {
+                list.add(new TraceRecorder.Region(getInt(17 + i * 8L), getInt(21 + i * 8L)));
+                regionOffsets[i] = total;
+                total += list.get(i).length();
+            }
+            regions = List.copyOf(list);
+            frameSize = total;
+            frame = ByteBuffer.allocateDirect(frameSize).order(byteOrder);
+            frameBytes = frame.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            index(header, size);
+        } catch (IOException | RuntimeException e) {
+            scope.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a trace file. A trace which is still being recorded can be opened too, it contains the frames complete
+     * at the time of opening.
+     *
+     * @throws IOException if the file can not be read or is not a trace.
+     */
+    public static TraceReader open(Path file) throws IOException {
+        return new TraceReader(file);
+    }
+
+    public List<TraceRecorder.Region> regions() {
+        return regions;
+    }
+
+    public ByteOrder byteOrder() {
+        return byteOrder;
+    }
+
+    public int keyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Nanoseconds from the start of the recording to the sampling of the frame.
+     */
+    public long timestamp(int frame) {
+        return timestamps[Objects.checkIndex(frame, frameCount)];
+    }
+
+    public boolean isKeyframe(int frame) {
+        return keyframes[Objects.checkIndex(frame, frameCount)] == frame;
+    }
+
+    /**
+     * Decodes the contents of all regions in the frame.
+     *
+     * @return Read-only buffer in the byte order of the target platform, containing the regions one after another. The
+     * buffer is reused and overwritten by the next decode.
+     */
+    public ByteBuffer frame(int n) {
+        Objects.checkIndex(n, frameCount);
+        int keyframe = keyframes[n];
+        if (decoded >= keyframe && decoded <= n) {
+            for (int i = decoded + 1; i <= n; i++) {
+                apply(i);
+            }
+        } else if (decoded > n && keyframes[decoded] == keyframe && decoded - n < n - keyframe) {
+            for (int i = decoded; i > n; i--) {
+                apply(i);
+            }
+        } else {
+            long payload = offsets[keyframe] + TraceRecorder.FRAME_HEADER;
+            frame.clear().put(data.asSlice(payload, frameSize).asByteBuffer()).clear();
+            for (int i = keyframe + 1; i <= n; i++) {
+                apply(i);
+            }
+        }
+        decoded = n;
+        return frame.asReadOnlyBuffer().order(byteOrder);
+    }
+
+    /**
+     * Decodes the frame and returns the contents of one region.
+     *
+     * @return Read-only buffer in the byte order of the target platform. The buffer is overwritten by the next decode.
+     */
+    public ByteBuffer region(int n, int region) {
+        ByteBuffer contents = frame(n);
+        int offset = regionOffsets[Objects.checkIndex(region, regionOffsets.length)];
+        return contents.slice(offset, regions.get(region).length()).order(byteOrder);
+    }
+
+    @Override
+    public void close() {
+        scope.close();
+    }
+
+    private void apply(int n) {
+        long at = offsets[n] + TraceRecorder.FRAME_HEADER;
+        long end = at + getInt(offsets[n] + 1);
+        int position = 0;
+        while (at < end) {
+            int gap = 0;
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = MemoryAccess.getByteAtOffset(data, at++);
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            for (int shift = 0; ; shift += 7) {
+                byte b = MemoryAccess.getByteAtOffset(data, at++);
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            position += gap;
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                long xor = MemoryAccess.getLongAtOffset(data, at + i, ByteOrder.LITTLE_ENDIAN);
+                frameBytes.putLong(position + i, frameBytes.getLong(position + i) ^ xor);
+            }
+            for (; i < length; i++) {
+                frame.put(position + i, (byte) (frame.get(position + i) ^ MemoryAccess.getByteAtOffset(data, at + i)));
+            }
+            at += length;
+            position += length;
+        }
+    }
+
+    private void index(long at, long size) {
+        int keyframe = -1;
+        while (at + TraceRecorder.FRAME_HEADER <= size) {
+            byte type = MemoryAccess.getByteAtOffset(data, at);
+            if (type != TraceRecorder.KEYFRAME && type != TraceRecorder.DELTA) {
+                break;
+            }
+            long length = Integer.toUnsignedLong(getInt(at + 1));
+            if (at + TraceRecorder.FRAME_HEADER + length > size || (keyframe < 0 && type != TraceRecorder.KEYFRAME)) {
+                break;
+            }
+            if (frameCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, frameCount * 2);
+                timestamps = Arrays.copyOf(timestamps, frameCount * 2);
+                keyframes = Arrays.copyOf(keyframes, frameCount * 2);
+            }
+            if (type == TraceRecorder.KEYFRAME) {
+                keyframe = frameCount;
+            }
+            offsets[frameCount] = at;
+            timestamps[frameCount] = MemoryAccess.getLongAtOffset(data, at + 1 + Integer.BYTES, ByteOrder.LITTLE_ENDIAN);
+            keyframes[frameCount] = keyframe;
+            frameCount++;
+            at += TraceRecorder.FRAME_HEADER + length;
+        }
+    }
+
+    private int getInt(long offset) {
+        return MemoryAccess.getIntAtOffset(data, offset, ByteOrder.LITTLE_ENDIAN);
+    }
+}
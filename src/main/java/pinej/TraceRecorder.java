@@ -0,0 +1,288 @@
+package pinej;
+
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Records memory regions on every tick into an append-only, memory-mapped trace file which {@link TraceReader} reads.
+ * <p>
+ * A frame holds the contents of all regions. Every {@link #keyframeInterval() keyframe interval} frames, and whenever
+ * the delta would not be smaller, the contents are stored as is. Other frames store only the runs of 8-byte words
+ * which changed, XORed with the previous frame, so an unchanged frame costs just its header.
+ * <p>
+ * The file is mapped in large windows and grows as frames are appended. A frame is marked complete only after it has
+ * been written, so a trace cut short by a crash is readable up to its last complete frame. Instances are not thread
+ * safe.
+ */
+public class TraceRecorder implements AutoCloseable {
+    static final int MAGIC = 0x52544A50;
+    static final int VERSION = 1;
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 2;
+
+    /**
+     * Size of the frame header: type, payload length and timestamp.
+     */
+    static final int FRAME_HEADER = 1 + Integer.BYTES + Long.BYTES;
+
+    private static final long WINDOW = 64L * 1024 * 1024;
+
+    private final PineClient client;
+
+    private final Path file;
+
+    private final List<Region> regions;
+
+    private final int keyframeInterval;
+
+    private final int frameSize;
+
+    private final BulkAccess.Reads reads;
+
+    private final long startNanos = System.nanoTime();
+
+    private ByteBuffer previous;
+    private ByteBuffer current;
+
+    // Little-endian views of the frames, so XORed words keep their bytes in place in the file.
+    private ByteBuffer previousBytes;
+    private ByteBuffer currentBytes;
+
+    private ResourceScope scope;
+    private ByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    private long frames;
+
+    TraceRecorder(PineClient client, Path file, List<Region> regions, int keyframeInterval) throws IOException {
+        if (regions.isEmpty() || keyframeInterval <= 0) {
+            throw new IllegalArgumentException("Trace needs regions and a positive keyframe interval");
+        }
+        long size = 0;
+        for (Region region : regions) {
+            size += region.length();
+        }
+        if (size > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Regions are too large: " + size + " bytes");
+        }
+        this.client = client;
+        this.file = file;
+        this.regions = List.copyOf(regions);
+        this.keyframeInterval = keyframeInterval;
+        this.frameSize = (int) size;
+        this.reads = new BulkAccess.Reads(client);
+        this.previous = ByteBuffer.allocateDirect(frameSize).order(client.byteOrder());
+        this.current = ByteBuffer.allocateDirect(frameSize).order(client.byteOrder());
+        this.previousBytes = previous.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.currentBytes = current.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        Files.write(file, new byte[0]);
+        map(0, headerSize(regions.size()));
+        window.putInt(MAGIC).putInt(VERSION)
+                .put((byte) (client.byteOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0))
+                .putInt(keyframeInterval)
+                .putInt(regions.size());
+        for (Region region : regions) {
+            window.putInt(region.address()).putInt(region.length());
+        }
+        position = window.position();
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public List<Region> regions() {
+        return regions;
+    }
+
+    public int keyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /**
+     * @return Number of frames recorded.
+     */
+    public long frameCount() {
+        return frames;
+    }
+
+    /**
+     * @return Number of bytes written to the trace file.
+     */
+    public long size() {
+        return position;
+    }
+
+    /**
+     * Reads all regions and appends them to the trace as a new frame.
+     *
+     * @throws IllegalStateException if the emulator reports an error. No frame is written then.
+     * @throws UncheckedIOException if the trace file can not be extended.
+     */
+    public void tick() {
+        int offset = 0;
+        for (Region region : regions) {
+            reads.read(region.address(), current, offset, region.length());
+            offset += region.length();
+        }
+        reads.finish();
+        long timestamp = System.nanoTime() - startNanos;
+
+        ensure(FRAME_HEADER + frameSize);
+        int start = window.position();
+        int payload = start + FRAME_HEADER;
+        byte type = DELTA;
+        int end = -1;
+        if (frames % keyframeInterval != 0) {
+            end = encodeDelta(payload, payload + frameSize);
+        }
+        if (end < 0) {
+            type = KEYFRAME;
+            window.put(payload, current, 0, frameSize);
+            end = payload + frameSize;
+        }
+        window.putInt(start + 1, end - payload).putLong(start + 1 + Integer.BYTES, timestamp);
+        window.put(start, type);
+        window.position(end);
+        position = windowStart + end;
+        frames++;
+
+        ByteBuffer swap = previous;
+        previous = current;
+        current = swap;
+        swap = previousBytes;
+        previousBytes = currentBytes;
+        currentBytes = swap;
+    }
+
+    /**
+     * Unmaps the file and truncates it to the recorded frames.
+     *
+     * @throws UncheckedIOException if the file can not be truncated.
+     */
+    @Override
+    public void close() {
+        if (scope == null) {
+            return;
+        }
+        scope.close();
+        scope = null;
+        window = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes runs of changed words as varint gap, varint length and the XORed bytes.
+     *
+     * @return End of the payload, or -1 if it would reach the limit.
+     */
+    private int encodeDelta(int at, int limit) {
+        int out = at;
+        int last = 0;
+        int i = 0;
+        while (i < frameSize) {
+            if (sameWord(i)) {
+                i += 8;
+                continue;
+            }
+            int runStart = i;
+            while (i < frameSize && !sameWord(i)) {
+                i += 8;
+            }
+            int runEnd = Math.min(i, frameSize);
+            int length = runEnd - runStart;
+            if (out + 10 + length >= limit) {
+                return -1;
+            }
+            out = putVarint(out, runStart - last);
+            out = putVarint(out, length);
+            for (int j = runStart; j < runEnd; ) {
+                if (runEnd - j >= 8) {
+                    window.putLong(out, currentBytes.getLong(j) ^ previousBytes.getLong(j));
+                    out += 8;
+                    j += 8;
+                } else {
+                    window.put(out++, (byte) (current.get(j) ^ previous.get(j)));
+                    j++;
+                }
+            }
+            last = runEnd;
+        }
+        return out;
+    }
+
+    private boolean sameWord(int i) {
+        if (frameSize - i >= 8) {
+            return currentBytes.getLong(i) == previousBytes.getLong(i);
+        }
+        for (int j = i; j < frameSize; j++) {
+            if (current.get(j) != previous.get(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int putVarint(int at, int value) {
+        while ((value & ~0x7F) != 0) {
+            window.put(at++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        window.put(at++, (byte) value);
+        return at;
+    }
+
+    private void ensure(long bytes) {
+        if (window.remaining() < bytes) {
+            map(position, bytes);
+        }
+    }
+
+    private void map(long start, long bytes) {
+        if (scope != null) {
+            scope.close();
+        }
+        scope = ResourceScope.newSharedScope();
+        try {
+            MemorySegment segment = MemorySegment.mapFile(file, start, Math.max(WINDOW, bytes),
+                    FileChannel.MapMode.READ_WRITE, scope);
+            window = segment.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+            windowStart = start;
+        } catch (IOException e) {
+            scope.close();
+            scope = null;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static int headerSize(int regionCount) {
+        return 4 * Integer.BYTES + 1 + regionCount * 2 * Integer.BYTES;
+    }
+
+    /**
+     * Range of memory recorded in every frame.
+     */
+    public record Region(int address, int length) {
+        public Region {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Region length must be positive: " + length);
+            }
+        }
+    }
+}
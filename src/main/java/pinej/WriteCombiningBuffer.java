@@ -0,0 +1,147 @@
+package pinej;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Collects scalar writes and sends them on {@link #flush()}, merging writes to adjacent addresses into the widest
+ * aligned write commands of a single batch. Later writes to the same address replace earlier ones.
+ * <p>
+ * Pending writes are not visible to reads until flushed. Pending bytes are stored in primitive arrays which are reused
+ * between flushes.
+ */
+public class WriteCombiningBuffer implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final PineClient client;
+
+    private final BulkAccess.Writes writes;
+
+    private final ByteBuffer scratch;
+
+    private int[] addresses = new int[INITIAL_CAPACITY];
+
+    private byte[] values = new byte[INITIAL_CAPACITY];
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+
+    private ByteBuffer run;
+
+    private int count;
+
+    WriteCombiningBuffer(PineClient client) {
+        this.client = client;
+        this.writes = new BulkAccess.Writes(client);
+        this.scratch = ByteBuffer.allocate(Long.BYTES).order(client.byteOrder());
+        this.run = ByteBuffer.allocate(INITIAL_CAPACITY).order(client.byteOrder());
+    }
+
+    public void write(int address, byte value) {
+        add(address, value);
+    }
+
+    public void write(int address, short value) {
+        scratch.putShort(0, value);
+        addScratch(address, Short.BYTES);
+    }
+
+    public void write(int address, int value) {
+        scratch.putInt(0, value);
+        addScratch(address, Integer.BYTES);
+    }
+
+    public void write(int address, long value) {
+        scratch.putLong(0, value);
+        addScratch(address, Long.BYTES);
+    }
+
+    public void write(int address, float value) {
+        write(address, Float.floatToRawIntBits(value));
+    }
+
+    public void write(int address, double value) {
+        write(address, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @return Number of bytes written since the last flush, counting repeated writes to the same address.
+     */
+    public int pending() {
+        return count;
+    }
+
+    /**
+     * Discards pending writes without sending them.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Sends all pending writes merged into as few commands as possible.
+     *
+     * @throws IllegalStateException if the emulator reports an error. Pending writes are discarded in any case.
+     */
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = Integer.toUnsignedLong(addresses[i]) << 32 | i;
+        }
+        Arrays.sort(keys, 0, count);
+
+        try {
+            int runStart = 0;
+            int runLength = 0;
+            for (int i = 0; i < count; i++) {
+                int address = (int) (keys[i] >>> 32);
+                byte value = values[(int) keys[i]];
+                if (runLength > 0 && address == runStart + runLength - 1) {
+                    run.put(runLength - 1, value);
+                    continue;
+                }
+                if (runLength > 0 && address != runStart + runLength) {
+                    writes.write(runStart, run, 0, runLength);
+                    runLength = 0;
+                }
+                if (runLength == 0) {
+                    runStart = address;
+                }
+                if (runLength == run.capacity()) {
+                    run = ByteBuffer.allocate(runLength * 2).order(client.byteOrder()).put(run.clear());
+                }
+                run.put(runLength++, value);
+            }
+            writes.write(runStart, run, 0, runLength);
+            writes.finish();
+        } finally {
+            count = 0;
+        }
+    }
+
+    /**
+     * Flushes the pending writes.
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void addScratch(int address, int width) {
+        for (int i = 0; i < width; i++) {
+            add(address + i, scratch.get(i));
+        }
+    }
+
+    private void add(int address, byte value) {
+        if (count == addresses.length) {
+            addresses = Arrays.copyOf(addresses, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+            keys = Arrays.copyOf(keys, count * 2);
+        }
+        addresses[count] = address;
+        values[count] = value;
+        count++;
+    }
+}
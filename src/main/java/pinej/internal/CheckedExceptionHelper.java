@@ -11,10 +11,18 @@ public interface CheckedExceptionHelper<T> {
         try {
             return callable.call();
         } catch (Throwable t) {
-            throw new RuntimeException("Function call failed", t);
+            throw wrap(t);
         }
     }
 
+    /**
+     * Wraps a throwable from a failed call for rethrowing it unchecked. Used on hot paths where capturing the call in a
+     * lambda for {@link #call(CheckedExceptionHelper)} would allocate.
+     */
+    static RuntimeException wrap(Throwable t) {
+        return new RuntimeException("Function call failed", t);
+    }
+
     T call() throws Throwable;
 }
 
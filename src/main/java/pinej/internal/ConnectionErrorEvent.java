@@ -0,0 +1,21 @@
+package pinej.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for PINE calls failing because the emulator could not be reached.
+ */
+@Name("pinej.ConnectionError")
+@Label("PINE Connection Error")
+@Category("PINE")
+@Description("Emulator could not be reached")
+@StackTrace(false)
+public class ConnectionErrorEvent extends Event {
+    @Label("Error")
+    public String error;
+}
@@ -8,249 +8,516 @@ import jdk.incubator.foreign.MemoryAddress;
 import jdk.incubator.foreign.SymbolLookup;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static pinej.internal.CheckedExceptionHelper.call;
+import static pinej.internal.CheckedExceptionHelper.wrap;
 import static jdk.incubator.foreign.CLinker.*;
 
 /**
  * Implementation of IPC Accessor which uses Foreign Linker API to find and call the C functions.
+ * <p>
+ * The downcall handles are {@code static final} and called with {@code invokeExact}, so the JIT treats them as
+ * constants and the scalar calls neither allocate nor box their arguments or results. They are shared by all accessors
+ * and each one is linked on its first call, so only the functions a program uses are linked. A function which can not
+ * be linked fails every call with an exception naming the function and the cause.
+ * <p>
+ * The functions are looked up among the libraries loaded by the class loader of this class, so only one library can be
+ * used per process. Creating an accessor for a second, different library fails.
+ * <p>
+ * With trivial calls enabled, the calls which only work on the memory of the library are linked as trivial: they skip
+ * the transition of the thread to native state and back, which is most of the cost of a short downcall. These are
+ * {@code get_error}, {@code get_reply_int} and {@code read}, {@code write} and {@code status} when queued to a batch.
+ * The same calls made outside a batch wait for the emulator, and a trivial call would hold off safepoints and so every
+ * other thread of the JVM until the emulator replies, so they keep the regular transition.
  */
 public class PineAccessorImpl implements PineAccessor {
+    private static Path library;
 
-    private final SymbolLookup ipcLibrary;
-
-    private final MethodHandle allocatePS2;
-    private final MethodHandle allocatePS3;
-    private final MethodHandle initializeBatch;
-    private final MethodHandle freeDataStream;
-    private final MethodHandle finalizeBatch;
-    private final MethodHandle getReply;
-    private final MethodHandle sendCommand;
-    private final MethodHandle read;
-    private final MethodHandle version;
-    private final MethodHandle emuStatus;
-    private final MethodHandle getGameTitle;
-    private final MethodHandle getGameId;
-    private final MethodHandle getGameUuid;
-    private final MethodHandle getGameVersion;
-    private final MethodHandle saveState;
-    private final MethodHandle loadState;
-    private final MethodHandle write;
-    private final MethodHandle deletePS2;
-    private final MethodHandle deletePS3;
-    private final MethodHandle freeBatchCommand;
-    private final MethodHandle getError;
+    private static PineAccessorImpl shared;
+
+    private static PineAccessorImpl sharedTrivial;
+
+    private final boolean trivialCalls;
 
     public PineAccessorImpl(Path file) {
-        if (!Files.isRegularFile(file)) {
-            throw new IllegalArgumentException("Library does not exists in " + file.toAbsolutePath());
+        this(file, false);
+    }
+
+    /**
+     * @param trivialCalls Whether calls which do not wait for the emulator are made as trivial downcalls.
+     * @throws IllegalStateException if a different library has already been loaded.
+     */
+    public PineAccessorImpl(Path file, boolean trivialCalls) {
+        this.trivialCalls = trivialCalls;
+        load(file);
+    }
+
+    /**
+     * Returns the accessor of the library, loading the library on the first call. The accessor holds no state of its
+     * own, so all clients of the library can share it.
+     *
+     * @throws IllegalStateException if a different library has already been loaded.
+     */
+    public static PineAccessorImpl shared(Path file) {
+        return shared(file, false);
+    }
+
+    /**
+     * Returns the accessor of the library in the given mode, loading the library on the first call.
+     *
+     * @throws IllegalStateException if a different library has already been loaded.
+     */
+    public static synchronized PineAccessorImpl shared(Path file, boolean trivialCalls) {
+        load(file);
+        if (trivialCalls) {
+            if (sharedTrivial == null) {
+                sharedTrivial = new PineAccessorImpl(file, true);
+            }
+            return sharedTrivial;
+        }
+        if (shared == null) {
+            shared = new PineAccessorImpl(file, false);
+        }
+        return shared;
+    }
+
+    private static synchronized void load(Path file) {
+        Path path = file.toAbsolutePath().normalize();
+        if (library != null) {
+            if (!library.equals(path)) {
+                throw new IllegalStateException("Library is already loaded from %s, can not load %s as well"
+                        .formatted(library, path));
+            }
+            return;
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Library does not exists in " + path);
         }
 
         try {
-            System.load(file.toAbsolutePath().toString());
-            this.ipcLibrary = SymbolLookup.loaderLookup();
+            System.load(path.toString());
+            SymbolLookup.loaderLookup();
         } catch (UnsatisfiedLinkError e) {
-            throw new IllegalArgumentException("Could not load library from " + file.toAbsolutePath(), e);
+            throw new IllegalArgumentException("Could not load library from " + path, e);
         } catch (IllegalCallerException e) {
             throw new IllegalStateException("Could not create IPC library, make sure --enable-native-access is set", e);
         }
-        CLinker cLinker = CLinker.getInstance();
-
-        allocatePS2 = cLinker.downcallHandle(
-                functionLookup("pcsx2_new"),
-                MethodType.methodType(MemoryAddress.class),
-                FunctionDescriptor.of(C_POINTER));
-        allocatePS3 = cLinker.downcallHandle(
-                functionLookup("rpcs3_new"),
-                MethodType.methodType(MemoryAddress.class),
-                FunctionDescriptor.of(C_POINTER));
-        initializeBatch = cLinker.downcallHandle(
-                functionLookup("initialize_batch"),
-                MethodType.methodType(void.class, MemoryAddress.class),
-                FunctionDescriptor.ofVoid(C_POINTER));
-        freeDataStream = cLinker.downcallHandle(
-                functionLookup("free_datastream"),
-                MethodType.methodType(void.class, MemoryAddress.class),
-                FunctionDescriptor.ofVoid(C_POINTER));
-        finalizeBatch = cLinker.downcallHandle(
-                functionLookup("finalize_batch"),
-                MethodType.methodType(int.class, MemoryAddress.class),
-                FunctionDescriptor.of(C_INT, C_POINTER));
-        getReply = cLinker.downcallHandle(
-                functionLookup("get_reply_int"),
-                MethodType.methodType(long.class, MemoryAddress.class, int.class, int.class, byte.class),
-                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_INT, C_CHAR));
-        sendCommand = cLinker.downcallHandle(
-                functionLookup("send_command"),
-                MethodType.methodType(void.class, MemoryAddress.class, int.class),
-                FunctionDescriptor.ofVoid(C_POINTER, C_INT));
-        read = cLinker.downcallHandle(
-                functionLookup("read"),
-                MethodType.methodType(long.class, MemoryAddress.class, int.class, byte.class, byte.class),
-                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_CHAR, C_CHAR));
-        version = cLinker.downcallHandle(
-                functionLookup("version"),
-                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
-        emuStatus = cLinker.downcallHandle(
-                functionLookup("status"),
-                MethodType.methodType(int.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_INT, C_POINTER, C_CHAR));
-        getGameTitle = cLinker.downcallHandle(
-                functionLookup("getgametitle"),
-                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
-        getGameId = cLinker.downcallHandle(
-                functionLookup("getgameid"),
-                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
-        getGameUuid = cLinker.downcallHandle(
-                functionLookup("getgameuuid"),
-                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
-        getGameVersion = cLinker.downcallHandle(
-                functionLookup("getgametitle"),
-                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
-                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
-        saveState = cLinker.downcallHandle(
-                functionLookup("savestate"),
-                MethodType.methodType(void.class, MemoryAddress.class, byte.class, byte.class),
-                FunctionDescriptor.ofVoid(C_POINTER, C_CHAR, C_CHAR));
-        loadState = cLinker.downcallHandle(
-                functionLookup("loadstate"),
-                MethodType.methodType(void.class, MemoryAddress.class, byte.class, byte.class),
-                FunctionDescriptor.ofVoid(C_POINTER, C_CHAR, C_CHAR));
-        write = cLinker.downcallHandle(
-                functionLookup("write"),
-                MethodType.methodType(void.class, MemoryAddress.class, int.class, long.class, byte.class, byte.class),
-                FunctionDescriptor.ofVoid(C_POINTER, C_INT, C_LONG_LONG, C_CHAR, C_CHAR));
-        deletePS2 = cLinker.downcallHandle(
-                functionLookup("pcsx2_delete"),
-                MethodType.methodType(void.class, MemoryAddress.class),
-                FunctionDescriptor.ofVoid(C_POINTER));
-        deletePS3 = cLinker.downcallHandle(
-                functionLookup("rpcs3_delete"),
-                MethodType.methodType(void.class, MemoryAddress.class),
-                FunctionDescriptor.ofVoid(C_POINTER));
-        freeBatchCommand = cLinker.downcallHandle(
-                functionLookup("free_batch_command"),
-                MethodType.methodType(void.class, int.class),
-                FunctionDescriptor.ofVoid(C_INT));
-        getError = cLinker.downcallHandle(
-                functionLookup("get_error"),
-                MethodType.methodType(int.class, MemoryAddress.class),
-                FunctionDescriptor.of(C_INT, C_POINTER));
+        library = path;
     }
 
     @Override
     public MemoryAddress allocatePS2() {
-        return (MemoryAddress) call(allocatePS2::invoke);
+        try {
+            return (MemoryAddress) AllocatePs2.HANDLE.invokeExact();
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress allocatePS3() {
-        return (MemoryAddress) call(allocatePS3::invoke);
+        try {
+            return (MemoryAddress) AllocatePs3.HANDLE.invokeExact();
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void initializeBatch(MemoryAddress ipc) {
-        call(() -> initializeBatch.invoke(ipc));
+        try {
+            InitializeBatch.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void freeDataStream(MemoryAddress ipc) {
-        call(() -> freeDataStream.invoke(ipc));
+        try {
+            FreeDataStream.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public int finalizeBatch(MemoryAddress ipc) {
-        return (int) call(() -> finalizeBatch.invoke(ipc));
+        try {
+            return (int) FinalizeBatch.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
-        return (long) call(() -> getReply.invoke(ipc, cmd, place, command));
+        try {
+            if (trivialCalls) {
+                return (long) GetReplyTrivial.HANDLE.invokeExact(ipc, cmd, place, command);
+            }
+            return (long) GetReply.HANDLE.invokeExact(ipc, cmd, place, command);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
+    }
+
+    @Override
+    public MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        try {
+            return (MemoryAddress) GetReplyString.HANDLE.invokeExact(ipc, cmd, place, command);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void sendCommand(MemoryAddress ipc, int command) {
-        call (() -> sendCommand.invoke(ipc, command));
+        try {
+            SendCommand.HANDLE.invokeExact(ipc, command);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public long read(MemoryAddress ipc, int address, byte command, byte batch) {
-        return (long) call(() -> read.invoke(ipc, address, command, batch));
+        try {
+            if (trivialCalls && batch != 0) {
+                return (long) ReadTrivial.HANDLE.invokeExact(ipc, address, command, batch);
+            }
+            return (long) Read.HANDLE.invokeExact(ipc, address, command, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress version(MemoryAddress ipc, byte batch) {
-        return (MemoryAddress) call(() -> version.invoke(ipc, batch));
+        try {
+            return (MemoryAddress) Version.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public int emuStatus(MemoryAddress ipc, byte batch) {
-        return (int) call(() -> emuStatus.invoke(ipc, batch));
+        try {
+            if (trivialCalls && batch != 0) {
+                return (int) EmuStatusTrivial.HANDLE.invokeExact(ipc, batch);
+            }
+            return (int) EmuStatus.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
-        return (MemoryAddress) call(() -> getGameTitle.invoke(ipc, batch));
+        try {
+            return (MemoryAddress) GetGameTitle.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
-        return (MemoryAddress) call(() -> getGameId.invoke(ipc, batch));
+        try {
+            return (MemoryAddress) GetGameId.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
-        return (MemoryAddress) call(() -> getGameUuid.invoke(ipc, batch));
+        try {
+            return (MemoryAddress) GetGameUuid.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
-        return (MemoryAddress) call(() -> getGameVersion.invoke(ipc, batch));
+        try {
+            return (MemoryAddress) GetGameVersion.HANDLE.invokeExact(ipc, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void saveState(MemoryAddress ipc, byte slot, byte batch) {
-        call(() -> saveState.invoke(ipc, slot, batch));
+        try {
+            SaveState.HANDLE.invokeExact(ipc, slot, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void loadState(MemoryAddress ipc, byte slot, byte batch) {
-        call(() -> loadState.invoke(ipc, slot, batch));
+        try {
+            LoadState.HANDLE.invokeExact(ipc, slot, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
-        call(() -> write.invoke(ipc, address, value, command, batch));
+        try {
+            if (trivialCalls && batch != 0) {
+                WriteTrivial.HANDLE.invokeExact(ipc, address, value, command, batch);
+                return;
+            }
+            Write.HANDLE.invokeExact(ipc, address, value, command, batch);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void deletePS2(MemoryAddress ipc) {
-        call(() -> deletePS2.invoke(ipc));
+        try {
+            DeletePs2.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void deletePS3(MemoryAddress ipc) {
-        call(() -> deletePS3.invoke(ipc));
+        try {
+            DeletePs3.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public void freeBatchCommand(int cmd) {
-        call(() -> freeBatchCommand.invoke(cmd));
+        try {
+            FreeBatchCommand.HANDLE.invokeExact(cmd);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
     }
 
     @Override
     public int getError(MemoryAddress ipc) {
-        return (int) call(() -> getError.invoke(ipc));
+        try {
+            if (trivialCalls) {
+                return (int) GetErrorTrivial.HANDLE.invokeExact(ipc);
+            }
+            return (int) GetError.HANDLE.invokeExact(ipc);
+        } catch (Throwable t) {
+            throw wrap(t);
+        }
+    }
+
+    /**
+     * Links the downcall handles of the library. Each handle lives in its own holder class below, so it is linked on
+     * first use by the class initialization of its holder and is a constant for the JIT from then on. A failed link
+     * yields a handle throwing on every call, as a failed class initialization would leave only
+     * {@link NoClassDefFoundError}s without the cause for the later calls.
+     */
+    private static final class Linker {
+        private static final MethodHandle LINK_FAILED = call(() -> MethodHandles.lookup().findStatic(Linker.class,
+                "linkFailed", MethodType.methodType(IllegalStateException.class, String.class, RuntimeException.class)));
+
+        private Linker() { }
+
+        static MethodHandle link(String name, MethodType type, FunctionDescriptor descriptor) {
+            try {
+                return CLinker.getInstance().downcallHandle(functionLookup(name), type, descriptor);
+            } catch (RuntimeException e) {
+                MethodHandle failure = MethodHandles.insertArguments(LINK_FAILED, 0, name, e);
+                MethodHandle thrower = MethodHandles.throwException(type.returnType(), IllegalStateException.class);
+                return MethodHandles.dropArguments(MethodHandles.foldArguments(thrower, failure), 0,
+                        type.parameterList());
+            }
+        }
+
+        static MethodHandle linkTrivial(String name, MethodType type, FunctionDescriptor descriptor) {
+            return link(name, type, descriptor.withAttribute(FunctionDescriptor.TRIVIAL_ATTRIBUTE_NAME, true));
+        }
+
+        private static Addressable functionLookup(String name) {
+            return SymbolLookup.loaderLookup().lookup("pine_" + name).orElseThrow(() -> new IllegalStateException("Function " + name + " lookup failed"));
+        }
+
+        private static IllegalStateException linkFailed(String name, RuntimeException cause) {
+            return new IllegalStateException("Function " + name + " could not be linked", cause);
+        }
+    }
+
+    private static final class AllocatePs2 {
+        static final MethodHandle HANDLE = Linker.link("pcsx2_new",
+                MethodType.methodType(MemoryAddress.class),
+                FunctionDescriptor.of(C_POINTER));
+    }
+
+    private static final class AllocatePs3 {
+        static final MethodHandle HANDLE = Linker.link("rpcs3_new",
+                MethodType.methodType(MemoryAddress.class),
+                FunctionDescriptor.of(C_POINTER));
+    }
+
+    private static final class InitializeBatch {
+        static final MethodHandle HANDLE = Linker.link("initialize_batch",
+                MethodType.methodType(void.class, MemoryAddress.class),
+                FunctionDescriptor.ofVoid(C_POINTER));
+    }
+
+    private static final class FreeDataStream {
+        static final MethodHandle HANDLE = Linker.link("free_datastream",
+                MethodType.methodType(void.class, MemoryAddress.class),
+                FunctionDescriptor.ofVoid(C_POINTER));
+    }
+
+    private static final class FinalizeBatch {
+        static final MethodHandle HANDLE = Linker.link("finalize_batch",
+                MethodType.methodType(int.class, MemoryAddress.class),
+                FunctionDescriptor.of(C_INT, C_POINTER));
+    }
+
+    private static final class GetReply {
+        static final MethodHandle HANDLE = Linker.link("get_reply_int",
+                MethodType.methodType(long.class, MemoryAddress.class, int.class, int.class, byte.class),
+                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_INT, C_CHAR));
+    }
+
+    private static final class GetReplyTrivial {
+        static final MethodHandle HANDLE = Linker.linkTrivial("get_reply_int",
+                MethodType.methodType(long.class, MemoryAddress.class, int.class, int.class, byte.class),
+                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_INT, C_CHAR));
+    }
+
+    private static final class GetReplyString {
+        static final MethodHandle HANDLE = Linker.link("get_reply_char",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, int.class, int.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_INT, C_INT, C_CHAR));
+    }
+
+    private static final class SendCommand {
+        static final MethodHandle HANDLE = Linker.link("send_command",
+                MethodType.methodType(void.class, MemoryAddress.class, int.class),
+                FunctionDescriptor.ofVoid(C_POINTER, C_INT));
+    }
+
+    private static final class Read {
+        static final MethodHandle HANDLE = Linker.link("read",
+                MethodType.methodType(long.class, MemoryAddress.class, int.class, byte.class, byte.class),
+                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_CHAR, C_CHAR));
+    }
+
+    private static final class ReadTrivial {
+        static final MethodHandle HANDLE = Linker.linkTrivial("read",
+                MethodType.methodType(long.class, MemoryAddress.class, int.class, byte.class, byte.class),
+                FunctionDescriptor.of(C_LONG_LONG, C_POINTER, C_INT, C_CHAR, C_CHAR));
+    }
+
+    private static final class Version {
+        static final MethodHandle HANDLE = Linker.link("version",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
+    }
+
+    private static final class EmuStatus {
+        static final MethodHandle HANDLE = Linker.link("status",
+                MethodType.methodType(int.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_INT, C_POINTER, C_CHAR));
     }
 
-    private Addressable functionLookup(String name) {
-        return call(() -> ipcLibrary.lookup("pine_" + name).orElseThrow(() -> new IllegalStateException("Function " + name + " lookup failed")));
+    private static final class EmuStatusTrivial {
+        static final MethodHandle HANDLE = Linker.linkTrivial("status",
+                MethodType.methodType(int.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_INT, C_POINTER, C_CHAR));
+    }
+
+    private static final class GetGameTitle {
+        static final MethodHandle HANDLE = Linker.link("getgametitle",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
+    }
+
+    private static final class GetGameId {
+        static final MethodHandle HANDLE = Linker.link("getgameid",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
+    }
+
+    private static final class GetGameUuid {
+        static final MethodHandle HANDLE = Linker.link("getgameuuid",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
+    }
+
+    private static final class GetGameVersion {
+        static final MethodHandle HANDLE = Linker.link("getgameversion",
+                MethodType.methodType(MemoryAddress.class, MemoryAddress.class, byte.class),
+                FunctionDescriptor.of(C_POINTER, C_POINTER, C_CHAR));
+    }
+
+    private static final class SaveState {
+        static final MethodHandle HANDLE = Linker.link("savestate",
+                MethodType.methodType(void.class, MemoryAddress.class, byte.class, byte.class),
+                FunctionDescriptor.ofVoid(C_POINTER, C_CHAR, C_CHAR));
+    }
+
+    private static final class LoadState {
+        static final MethodHandle HANDLE = Linker.link("loadstate",
+                MethodType.methodType(void.class, MemoryAddress.class, byte.class, byte.class),
+                FunctionDescriptor.ofVoid(C_POINTER, C_CHAR, C_CHAR));
+    }
+
+    private static final class Write {
+        static final MethodHandle HANDLE = Linker.link("write",
+                MethodType.methodType(void.class, MemoryAddress.class, int.class, long.class, byte.class, byte.class),
+                FunctionDescriptor.ofVoid(C_POINTER, C_INT, C_LONG_LONG, C_CHAR, C_CHAR));
+    }
+
+    private static final class WriteTrivial {
+        static final MethodHandle HANDLE = Linker.linkTrivial("write",
+                MethodType.methodType(void.class, MemoryAddress.class, int.class, long.class, byte.class, byte.class),
+                FunctionDescriptor.ofVoid(C_POINTER, C_INT, C_LONG_LONG, C_CHAR, C_CHAR));
+    }
+
+    private static final class DeletePs2 {
+        static final MethodHandle HANDLE = Linker.link("pcsx2_delete",
+                MethodType.methodType(void.class, MemoryAddress.class),
+                FunctionDescriptor.ofVoid(C_POINTER));
+    }
+
+    private static final class DeletePs3 {
+        static final MethodHandle HANDLE = Linker.link("rpcs3_delete",
+                MethodType.methodType(void.class, MemoryAddress.class),
+                FunctionDescriptor.ofVoid(C_POINTER));
+    }
+
+    private static final class FreeBatchCommand {
+        static final MethodHandle HANDLE = Linker.link("free_batch_command",
+                MethodType.methodType(void.class, int.class),
+                FunctionDescriptor.ofVoid(C_INT));
+    }
+
+    private static final class GetError {
+        static final MethodHandle HANDLE = Linker.link("get_error",
+                MethodType.methodType(int.class, MemoryAddress.class),
+                FunctionDescriptor.of(C_INT, C_POINTER));
+    }
+
+    private static final class GetErrorTrivial {
+        static final MethodHandle HANDLE = Linker.linkTrivial("get_error",
+                MethodType.methodType(int.class, MemoryAddress.class),
+                FunctionDescriptor.of(C_INT, C_POINTER));
     }
 }
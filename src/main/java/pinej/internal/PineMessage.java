@@ -0,0 +1,168 @@
+package pinej.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable request and reply buffers for one PINE message, either a single command or a batch.
+ * <p>
+ * Buffers are direct and grow on demand up to the protocol limits, so encoding commands into an existing message does
+ * not allocate.
+ */
+final class PineMessage {
+    private static final int INITIAL_SIZE = 256;
+    private static final int INITIAL_COUNT = 16;
+
+    private ByteBuffer request = allocate(INITIAL_SIZE);
+    private ByteBuffer reply = allocate(INITIAL_SIZE);
+
+    private byte[] opcodes = new byte[INITIAL_COUNT];
+    private int[] offsets = new int[INITIAL_COUNT];
+    private int count;
+    private int replySize = PineProtocol.REPLY_HEADER_SIZE;
+    private boolean overflow;
+
+    PineMessage() {
+        reset();
+    }
+
+    void reset() {
+        request.clear().position(PineProtocol.HEADER_SIZE);
+        count = 0;
+        replySize = PineProtocol.REPLY_HEADER_SIZE;
+        overflow = false;
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean overflow() {
+        return overflow;
+    }
+
+    byte opcode(int place) {
+        return opcodes[place];
+    }
+
+    void add(byte opcode, int address, long value, int slot) {
+        int size = PineProtocol.requestSize(opcode);
+        int expectedReply = PineProtocol.replySize(opcode);
+        if (overflow || size < 0 || count >= PineProtocol.MAX_BATCH_REPLY_COUNT
+                || request.position() + size > PineProtocol.MAX_IPC_SIZE
+                || replySize + expectedReply > PineProtocol.MAX_IPC_RETURN_SIZE) {
+            overflow = true;
+            return;
+        }
+        ensureRequest(size);
+        if (count == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        opcodes[count++] = opcode;
+        replySize += expectedReply;
+        request.put(opcode);
+        switch (opcode) {
+            case 0, 1, 2, 3 -> request.putInt(address);
+            case 4 -> request.putInt(address).put((byte) value);
+            case 5 -> request.putInt(address).putShort((short) value);
+            case 6 -> request.putInt(address).putInt((int) value);
+            case 7 -> request.putInt(address).putLong(value);
+            case 9, 0xA -> request.put((byte) slot);
+            default -> { }
+        }
+    }
+
+    /**
+     * Sends the request and reads the whole reply into the reply buffer.
+     *
+     * @return True if the emulator accepted the command, false if it replied with a failure.
+     * @throws IOException if the connection failed or the reply is malformed.
+     */
+    boolean exchange(SocketChannel channel) throws IOException {
+        int end = request.position();
+        request.putInt(0, end).flip();
+        try {
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+        } finally {
+            request.limit(request.capacity()).position(end);
+        }
+
+        reply.clear().limit(PineProtocol.HEADER_SIZE);
+        readFully(channel, reply);
+        int size = reply.getInt(0);
+        if (size < PineProtocol.REPLY_HEADER_SIZE || size > PineProtocol.MAX_IPC_RETURN_SIZE) {
+            throw new IOException("Invalid reply size " + size);
+        }
+        if (reply.capacity() < size) {
+            reply = allocate(Math.max(size, reply.capacity() * 2)).put(reply.flip());
+        }
+        reply.limit(size);
+        readFully(channel, reply);
+        if (reply.get(PineProtocol.HEADER_SIZE) != PineProtocol.IPC_OK) {
+            return false;
+        }
+        indexReplies(size);
+        return true;
+    }
+
+    long value(int place) {
+        int offset = offsets[place];
+        return switch (opcodes[place]) {
+            case 0 -> Byte.toUnsignedLong(reply.get(offset));
+            case 1 -> Short.toUnsignedLong(reply.getShort(offset));
+            case 2, 0xF -> Integer.toUnsignedLong(reply.getInt(offset));
+            case 3 -> reply.getLong(offset);
+            default -> 0;
+        };
+    }
+
+    String string(int place) {
+        int offset = offsets[place];
+        int length = reply.getInt(offset);
+        byte[] bytes = new byte[length > 0 ? length - 1 : 0];
+        reply.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void indexReplies(int size) throws IOException {
+        int offset = PineProtocol.REPLY_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offset;
+            offset += PineProtocol.replySize(opcodes[i]);
+            if (PineProtocol.isString(opcodes[i])) {
+                if (offset > size) {
+                    throw new IOException("Truncated reply");
+                }
+                offset += reply.getInt(offset - 4);
+            }
+        }
+        if (offset > size) {
+            throw new IOException("Truncated reply");
+        }
+    }
+
+    private void ensureRequest(int size) {
+        if (request.remaining() < size) {
+            request = allocate(Math.max(request.capacity() * 2, request.position() + size)).put(request.flip());
+        }
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by emulator");
+            }
+        }
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,106 @@
+package pinej.internal;
+
+import pinej.PineEnums;
+
+import java.nio.file.Path;
+
+/**
+ * Constants and helpers for the binary PINE wire protocol.
+ * <p>
+ * Every message starts with a little-endian 32-bit size that includes the size field itself. Requests are followed by
+ * a sequence of commands, replies by a result code and the concatenated return values of the commands.
+ */
+public final class PineProtocol {
+    public static final int MAX_IPC_SIZE = 650000;
+    public static final int MAX_IPC_RETURN_SIZE = 450000;
+    public static final int MAX_BATCH_REPLY_COUNT = 50000;
+
+    public static final int HEADER_SIZE = 4;
+    public static final int REPLY_HEADER_SIZE = 5;
+
+    public static final byte IPC_OK = 0;
+    public static final byte IPC_FAIL = (byte) 0xFF;
+
+    public static final int PS2_DEFAULT_SLOT = 28011;
+    public static final int PS3_DEFAULT_SLOT = 28012;
+
+    private PineProtocol() { }
+
+    /**
+     * @return Size of the command including the opcode, or -1 if the opcode is unknown.
+     */
+    public static int requestSize(byte opcode) {
+        return switch (opcode) {
+            case 0, 1, 2, 3 -> 5;
+            case 4 -> 6;
+            case 5 -> 7;
+            case 6 -> 9;
+            case 7 -> 13;
+            case 8, 0xB, 0xC, 0xD, 0xE, 0xF -> 1;
+            case 9, 0xA -> 2;
+            default -> -1;
+        };
+    }
+
+    /**
+     * @return Size of the fixed part of the reply of the command. String replies have a variable length after it.
+     */
+    public static int replySize(byte opcode) {
+        return switch (opcode) {
+            case 0 -> 1;
+            case 1 -> 2;
+            case 2, 8, 0xB, 0xC, 0xD, 0xE, 0xF -> 4;
+            case 3 -> 8;
+            default -> 0;
+        };
+    }
+
+    /**
+     * @return Width of the value read or written by the command in bytes, or 0 if it is not a memory command.
+     */
+    public static int width(byte opcode) {
+        return switch (opcode) {
+            case 0, 4 -> 1;
+            case 1, 5 -> 2;
+            case 2, 6 -> 4;
+            case 3, 7 -> 8;
+            default -> 0;
+        };
+    }
+
+    public static boolean isString(byte opcode) {
+        return opcode == 8 || (opcode >= 0xB && opcode <= 0xE);
+    }
+
+    /**
+     * @return Path of the socket the emulator of the given platform listens to in the given slot.
+     */
+    public static Path socketPath(Path directory, PineEnums.TargetPlatform platform, int slot) {
+        String name = switch (platform) {
+            case PS2 -> slot == PS2_DEFAULT_SLOT ? "pcsx2.sock" : "pcsx2.sock." + slot;
+            case PS3 -> slot == PS3_DEFAULT_SLOT ? "rpcs3.sock" : "rpcs3.sock." + slot;
+        };
+        return directory.resolve(name);
+    }
+
+    public static int defaultSlot(PineEnums.TargetPlatform platform) {
+        return switch (platform) {
+            case PS2 -> PS2_DEFAULT_SLOT;
+            case PS3 -> PS3_DEFAULT_SLOT;
+        };
+    }
+
+    /**
+     * @return Directory the emulators create their sockets in, following the reference implementation.
+     */
+    public static Path runtimeDirectory() {
+        String directory = System.getenv("XDG_RUNTIME_DIR");
+        if (directory == null || directory.isEmpty()) {
+            directory = System.getenv("TMPDIR");
+        }
+        if (directory == null || directory.isEmpty()) {
+            directory = "/tmp";
+        }
+        return Path.of(directory);
+    }
+}
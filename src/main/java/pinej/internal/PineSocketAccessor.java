@@ -0,0 +1,385 @@
+package pinej.internal;
+
+import pinej.PineAccessor;
+import pinej.PineEnums;
+import jdk.incubator.foreign.MemoryAddress;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Implementation of IPC Accessor which speaks the PINE wire protocol directly over a Unix domain socket.
+ * <p>
+ * The IPC structures and strings handed out by this accessor are opaque handles rather than native pointers, so no
+ * native library or native access is needed. Strings must be converted with {@link #toJavaString(MemoryAddress)}.
+ * <p>
+ * Like the batch mutex of the C library, a batch belongs to the thread which initialized it: initializing a batch
+ * blocks until the batch of another thread on the same IPC structure has been finalized.
+ */
+public class PineSocketAccessor implements PineAccessor {
+    private static final int OK = PineEnums.Error.SUCCESS.ordinal();
+    private static final int FAIL = PineEnums.Error.FAIL.ordinal();
+    private static final int OUT_OF_MEMORY = PineEnums.Error.OUT_OF_MEMORY.ordinal();
+    private static final int NO_CONNECTION = PineEnums.Error.NO_CONNECTION.ordinal();
+
+    private final Path directory;
+
+    private final Handles<Connection> connections = new Handles<>();
+    private final Handles<PineMessage> batches = new Handles<>();
+    private final Handles<String> strings = new Handles<>();
+
+    private final ArrayDeque<PineMessage> messagePool = new ArrayDeque<>();
+
+    /**
+     * @param directory Directory containing the emulator sockets.
+     */
+    public PineSocketAccessor(Path directory) {
+        this.directory = directory;
+    }
+
+    public PineSocketAccessor() {
+        this(PineProtocol.runtimeDirectory());
+    }
+
+    /**
+     * Allocates an IPC structure connecting to the emulator of the given platform in the given slot.
+     */
+    @Override
+    public MemoryAddress allocate(PineEnums.TargetPlatform platform, int slot) {
+        Path socket = PineProtocol.socketPath(directory, platform, slot);
+        return MemoryAddress.ofLong(connections.add(new Connection(UnixDomainSocketAddress.of(socket))));
+    }
+
+    @Override
+    public MemoryAddress allocatePS2() {
+        return allocate(PineEnums.TargetPlatform.PS2, PineProtocol.PS2_DEFAULT_SLOT);
+    }
+
+    @Override
+    public MemoryAddress allocatePS3() {
+        return allocate(PineEnums.TargetPlatform.PS3, PineProtocol.PS3_DEFAULT_SLOT);
+    }
+
+    @Override
+    public void initializeBatch(MemoryAddress ipc) {
+        Connection connection = connection(ipc);
+        // Initializing again in the owning thread restarts the batch instead of locking twice.
+        if (!connection.batchLock.isHeldByCurrentThread()) {
+            connection.batchLock.lock();
+        }
+        synchronized (connection) {
+            if (connection.batch == null) {
+                connection.batch = takeMessage();
+            }
+            connection.batch.reset();
+        }
+    }
+
+    @Override
+    public void freeDataStream(MemoryAddress ipc) {
+        strings.remove(ipc.toRawLongValue());
+    }
+
+    @Override
+    public int finalizeBatch(MemoryAddress ipc) {
+        Connection connection = connection(ipc);
+        if (!connection.batchLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Batch has not been initialized");
+        }
+        try {
+            synchronized (connection) {
+                PineMessage batch = connection.batch;
+                connection.batch = null;
+                return (int) batches.add(batch);
+            }
+        } finally {
+            connection.batchLock.unlock();
+        }
+    }
+
+    @Override
+    public long getReply(MemoryAddress ipc, int cmd, int place, byte command) {
+        return batch(cmd).value(place);
+    }
+
+    @Override
+    public MemoryAddress getReplyString(MemoryAddress ipc, int cmd, int place, byte command) {
+        return MemoryAddress.ofLong(strings.add(batch(cmd).string(place)));
+    }
+
+    @Override
+    public void sendCommand(MemoryAddress ipc, int command) {
+        Connection connection = connection(ipc);
+        PineMessage batch = batch(command);
+        synchronized (connection) {
+            connection.send(batch);
+        }
+    }
+
+    @Override
+    public long read(MemoryAddress ipc, int address, byte command, byte batch) {
+        Connection connection = connection(ipc);
+        synchronized (connection) {
+            PineMessage message = connection.message(batch);
+            message.add(command, address, 0, 0);
+            if (batch != 0 || !connection.send(message)) {
+                return 0;
+            }
+            return message.value(0);
+        }
+    }
+
+    @Override
+    public MemoryAddress version(MemoryAddress ipc, byte batch) {
+        return stringCommand(ipc, PineEnums.Command.VERSION, batch);
+    }
+
+    @Override
+    public int emuStatus(MemoryAddress ipc, byte batch) {
+        Connection connection = connection(ipc);
+        synchronized (connection) {
+            PineMessage message = connection.message(batch);
+            message.add(PineEnums.Command.STATUS.toByte(), 0, 0, 0);
+            if (batch != 0 || !connection.send(message)) {
+                return 0;
+            }
+            return (int) message.value(0);
+        }
+    }
+
+    @Override
+    public MemoryAddress getGameTitle(MemoryAddress ipc, byte batch) {
+        return stringCommand(ipc, PineEnums.Command.GAME_TITLE, batch);
+    }
+
+    @Override
+    public MemoryAddress getGameId(MemoryAddress ipc, byte batch) {
+        return stringCommand(ipc, PineEnums.Command.GAME_ID, batch);
+    }
+
+    @Override
+    public MemoryAddress getGameUuid(MemoryAddress ipc, byte batch) {
+        return stringCommand(ipc, PineEnums.Command.GAME_UUID, batch);
+    }
+
+    @Override
+    public MemoryAddress getGameVersion(MemoryAddress ipc, byte batch) {
+        return stringCommand(ipc, PineEnums.Command.GAME_VERSION, batch);
+    }
+
+    @Override
+    public void saveState(MemoryAddress ipc, byte slot, byte batch) {
+        stateCommand(ipc, PineEnums.Command.SAVE_STATE, slot, batch);
+    }
+
+    @Override
+    public void loadState(MemoryAddress ipc, byte slot, byte batch) {
+        stateCommand(ipc, PineEnums.Command.LOAD_STATE, slot, batch);
+    }
+
+    @Override
+    public void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
+        Connection connection = connection(ipc);
+        synchronized (connection) {
+            PineMessage message = connection.message(batch);
+            message.add(command, address, value, 0);
+            if (batch == 0) {
+                connection.send(message);
+            }
+        }
+    }
+
+    @Override
+    public void deletePS2(MemoryAddress ipc) {
+        delete(ipc);
+    }
+
+    @Override
+    public void deletePS3(MemoryAddress ipc) {
+        delete(ipc);
+    }
+
+    @Override
+    public void freeBatchCommand(int cmd) {
+        PineMessage message = batches.remove(cmd);
+        if (message != null) {
+            synchronized (messagePool) {
+                messagePool.push(message);
+            }
+        }
+    }
+
+    @Override
+    public int getError(MemoryAddress ipc) {
+        return connection(ipc).error;
+    }
+
+    @Override
+    public String toJavaString(MemoryAddress address) {
+        return strings.remove(address.toRawLongValue());
+    }
+
+    private MemoryAddress stringCommand(MemoryAddress ipc, PineEnums.Command command, byte batch) {
+        Connection connection = connection(ipc);
+        String result;
+        synchronized (connection) {
+            PineMessage message = connection.message(batch);
+            message.add(command.toByte(), 0, 0, 0);
+            if (batch != 0 || !connection.send(message)) {
+                return MemoryAddress.NULL;
+            }
+            result = message.string(0);
+        }
+        return MemoryAddress.ofLong(strings.add(result));
+    }
+
+    private void stateCommand(MemoryAddress ipc, PineEnums.Command command, byte slot, byte batch) {
+        Connection connection = connection(ipc);
+        synchronized (connection) {
+            PineMessage message = connection.message(batch);
+            message.add(command.toByte(), 0, 0, slot);
+            if (batch == 0) {
+                connection.send(message);
+            }
+        }
+    }
+
+    private void delete(MemoryAddress ipc) {
+        Connection connection = connections.remove(ipc.toRawLongValue());
+        if (connection != null) {
+            synchronized (connection) {
+                connection.close();
+            }
+        }
+    }
+
+    private Connection connection(MemoryAddress ipc) {
+        Connection connection = connections.get(ipc.toRawLongValue());
+        if (connection == null) {
+            throw new IllegalArgumentException("Unknown IPC structure " + ipc);
+        }
+        return connection;
+    }
+
+    private PineMessage batch(int cmd) {
+        PineMessage batch = batches.get(cmd);
+        if (batch == null) {
+            throw new IllegalArgumentException("Unknown batch command " + cmd);
+        }
+        return batch;
+    }
+
+    private PineMessage takeMessage() {
+        synchronized (messagePool) {
+            PineMessage message = messagePool.poll();
+            return message != null ? message : new PineMessage();
+        }
+    }
+
+    private static final class Connection {
+        private final UnixDomainSocketAddress address;
+        private final PineMessage single = new PineMessage();
+        private final ReentrantLock batchLock = new ReentrantLock();
+
+        private SocketChannel channel;
+        private PineMessage batch;
+        private volatile int error = OK;
+
+        private Connection(UnixDomainSocketAddress address) {
+            this.address = address;
+        }
+
+        private PineMessage message(byte batch) {
+            if (batch == 0) {
+                single.reset();
+                return single;
+            }
+            if (this.batch == null || !batchLock.isHeldByCurrentThread()) {
+                throw new IllegalStateException("Batch has not been initialized");
+            }
+            return this.batch;
+        }
+
+        private boolean send(PineMessage message) {
+            if (message.overflow()) {
+                error = OUT_OF_MEMORY;
+                return false;
+            }
+            try {
+                if (channel == null) {
+                    channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+                    channel.connect(address);
+                }
+                boolean success = message.exchange(channel);
+                error = success ? OK : FAIL;
+                return success;
+            } catch (IOException e) {
+                close();
+                error = NO_CONNECTION;
+                return false;
+            }
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Connection is being discarded anyway
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Table of objects referenced by small positive integer handles. Freed handles are reused.
+     */
+    private static final class Handles<T> {
+        private Object[] entries = new Object[8];
+        private int[] free = new int[8];
+        private int freeCount;
+        private int size;
+
+        synchronized long add(T entry) {
+            int index;
+            if (freeCount > 0) {
+                index = free[--freeCount];
+            } else {
+                if (size == entries.length) {
+                    entries = Arrays.copyOf(entries, size * 2);
+                }
+                index = size++;
+            }
+            entries[index] = entry;
+            return index + 1L;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized T get(long handle) {
+            int index = (int) handle - 1;
+            return index >= 0 && index < size ? (T) entries[index] : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized T remove(long handle) {
+            int index = (int) handle - 1;
+            if (index < 0 || index >= size || entries[index] == null) {
+                return null;
+            }
+            T entry = (T) entries[index];
+            entries[index] = null;
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = index;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package pinej.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for PINE calls slower than the configured threshold.
+ */
+@Name("pinej.SlowCommand")
+@Label("Slow PINE Command")
+@Category("PINE")
+@Description("PINE call which took longer than the slow call threshold")
+@StackTrace(false)
+public class SlowCommandEvent extends Event {
+    @Label("Command")
+    public String command;
+
+    @Label("Address")
+    public int address;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+}
@@ -0,0 +1,289 @@
+package pinej.testing;
+
+import pinej.PineClient;
+import pinej.PineEnums;
+import pinej.internal.PineProtocol;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process emulator stand-in which answers PINE protocol messages on a Unix domain socket.
+ * <p>
+ * Memory commands operate on a plain byte array, so clients can be tested and benchmarked without PCSX2 or RPCS3.
+ * Every accepted connection is served by its own daemon thread.
+ */
+public class FakePineServer implements AutoCloseable {
+    /**
+     * Size of the PS2 EE RAM.
+     */
+    public static final int PS2_MEMORY_SIZE = 32 * 1024 * 1024;
+
+    private final Path socket;
+
+    private final ServerSocketChannel server;
+
+    private final byte[] memory;
+
+    private final ByteBuffer memoryView;
+
+    private final List<SocketChannel> clients = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong messages = new AtomicLong();
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private volatile PineEnums.Status status = PineEnums.Status.RUNNING;
+
+    private volatile String version = "FakePineServer";
+
+    private volatile PineClient.GameInfo gameInfo = new PineClient.GameInfo("", "", "", "");
+
+    /**
+     * Starts a server listening at the default socket of the given platform in the given directory.
+     */
+    public static FakePineServer start(Path directory, PineEnums.TargetPlatform platform, int memorySize) throws IOException {
+        return new FakePineServer(PineProtocol.socketPath(directory, platform, PineProtocol.defaultSlot(platform)),
+                memorySize, platform);
+    }
+
+    /**
+     * @param socket Path of the socket file to create.
+     * @param memorySize Size of the emulated memory in bytes.
+     */
+    public FakePineServer(Path socket, int memorySize) throws IOException {
+        this(socket, memorySize, PineEnums.TargetPlatform.PS2);
+    }
+
+    /**
+     * @param socket Path of the socket file to create.
+     * @param memorySize Size of the emulated memory in bytes.
+     * @param platform Platform whose byte order the memory is in.
+     */
+    public FakePineServer(Path socket, int memorySize, PineEnums.TargetPlatform platform) throws IOException {
+        this.socket = socket;
+        this.memory = new byte[memorySize];
+        this.memoryView = ByteBuffer.wrap(memory).order(switch (platform) {
+            case PS2 -> ByteOrder.LITTLE_ENDIAN;
+            case PS3 -> ByteOrder.BIG_ENDIAN;
+        });
+        Files.deleteIfExists(socket);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        Thread acceptor = new Thread(this::accept, "FakePineServer-" + socket.getFileName());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public Path socket() {
+        return socket;
+    }
+
+    public void setStatus(PineEnums.Status status) {
+        this.status = status;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public void setGameInfo(PineClient.GameInfo gameInfo) {
+        this.gameInfo = gameInfo;
+    }
+
+    /**
+     * @return Number of IPC messages received, batches counting as one.
+     */
+    public long messageCount() {
+        return messages.get();
+    }
+
+    /**
+     * @return Number of commands received.
+     */
+    public long commandCount() {
+        return commands.get();
+    }
+
+    public void writeMemory(int address, byte[] data) {
+        synchronized (memory) {
+            System.arraycopy(data, 0, memory, address, data.length);
+        }
+    }
+
+    public byte[] readMemory(int address, int length) {
+        byte[] data = new byte[length];
+        synchronized (memory) {
+            System.arraycopy(memory, address, data, 0, length);
+        }
+        return data;
+    }
+
+    public void writeInt(int address, int value) {
+        synchronized (memory) {
+            memoryView.putInt(address, value);
+        }
+    }
+
+    public int readInt(int address) {
+        synchronized (memory) {
+            return memoryView.getInt(address);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        Files.deleteIfExists(socket);
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel client = server.accept();
+                clients.add(client);
+                Thread handler = new Thread(() -> serve(client), "FakePineServer-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        ByteBuffer request = ByteBuffer.allocateDirect(PineProtocol.MAX_IPC_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer reply = ByteBuffer.allocateDirect(PineProtocol.MAX_IPC_RETURN_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (client) {
+            while (true) {
+                request.clear().limit(PineProtocol.HEADER_SIZE);
+                if (!readFully(client, request)) {
+                    return;
+                }
+                int size = request.getInt(0);
+                if (size < PineProtocol.HEADER_SIZE || size > PineProtocol.MAX_IPC_SIZE) {
+                    return;
+                }
+                request.limit(size);
+                if (!readFully(client, request)) {
+                    return;
+                }
+                messages.incrementAndGet();
+                request.position(PineProtocol.HEADER_SIZE);
+                reply.clear().position(PineProtocol.REPLY_HEADER_SIZE);
+                boolean success;
+                try {
+                    success = process(request, reply);
+                } catch (BufferOverflowException | BufferUnderflowException e) {
+                    success = false;
+                }
+                if (!success) {
+                    reply.position(PineProtocol.REPLY_HEADER_SIZE);
+                }
+                reply.put(PineProtocol.HEADER_SIZE, success ? PineProtocol.IPC_OK : PineProtocol.IPC_FAIL);
+                reply.putInt(0, reply.position()).flip();
+                while (reply.hasRemaining()) {
+                    client.write(reply);
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private boolean process(ByteBuffer request, ByteBuffer reply) {
+        while (request.hasRemaining()) {
+            byte opcode = request.get();
+            int size = PineProtocol.requestSize(opcode);
+            if (size < 0 || request.remaining() < size - 1) {
+                return false;
+            }
+            commands.incrementAndGet();
+            int width = PineProtocol.width(opcode);
+            if (width > 0) {
+                int address = request.getInt();
+                if (status == PineEnums.Status.SHUTDOWN || address < 0 || address > memory.length - width) {
+                    return false;
+                }
+                if (opcode < PineEnums.Command.WRITE_8.toByte()) {
+                    read(address, width, reply);
+                } else {
+                    write(address, width, request);
+                }
+                continue;
+            }
+            PineClient.GameInfo info = gameInfo;
+            switch (opcode) {
+                case 8 -> putString(reply, version);
+                case 9, 0xA -> request.get();
+                case 0xB -> putString(reply, info.title());
+                case 0xC -> putString(reply, info.id());
+                case 0xD -> putString(reply, info.uuid());
+                case 0xE -> putString(reply, info.version());
+                case 0xF -> reply.putInt(switch (status) {
+                    case RUNNING -> 0;
+                    case PAUSED -> 1;
+                    case SHUTDOWN, ERROR -> 2;
+                });
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void read(int address, int width, ByteBuffer reply) {
+        synchronized (memory) {
+            switch (width) {
+                case 1 -> reply.put(memoryView.get(address));
+                case 2 -> reply.putShort(memoryView.getShort(address));
+                case 4 -> reply.putInt(memoryView.getInt(address));
+                default -> reply.putLong(memoryView.getLong(address));
+            }
+        }
+    }
+
+    private void write(int address, int width, ByteBuffer request) {
+        synchronized (memory) {
+            switch (width) {
+                case 1 -> memoryView.put(address, request.get());
+                case 2 -> memoryView.putShort(address, request.getShort());
+                case 4 -> memoryView.putInt(address, request.getInt());
+                default -> memoryView.putLong(address, request.getLong());
+            }
+        }
+    }
+
+    private static void putString(ByteBuffer reply, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        reply.putInt(bytes.length + 1).put(bytes).put((byte) 0);
+    }
+
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+package pinej;
+
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameSchedulerTest extends FakeServerTest {
+    private volatile boolean released;
+
+    @Test
+    void closeWaitsForRunningPoll() throws Exception {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16);
+        CountDownLatch entered = new CountDownLatch(1);
+        AtomicInteger polls = new AtomicInteger();
+        FrameScheduler scheduler = client.frameScheduler(Duration.ofMillis(1), frame -> {
+            polls.incrementAndGet();
+            entered.countDown();
+            // Not interruptible, so closing can not cut the task short.
+            while (!released) {
+                Thread.onSpinWait();
+            }
+        });
+        scheduler.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> close = CompletableFuture.runAsync(scheduler::close);
+        Thread.sleep(100);
+        assertFalse(close.isDone());
+        // Statistics do not wait for the poll either.
+        assertEquals(PineEnums.Status.RUNNING, scheduler.stats().status());
+        released = true;
+        close.get(5, TimeUnit.SECONDS);
+
+        int polled = polls.get();
+        Thread.sleep(50);
+        assertEquals(polled, polls.get());
+    }
+}
@@ -0,0 +1,40 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MemoryFreezerTest extends FakeServerTest {
+    @Test
+    void noTickAfterClose() throws IOException, InterruptedException {
+        AtomicInteger writes = new AtomicInteger();
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16, socket -> new MetricsPineAccessor(socket) {
+            @Override
+            public void write(MemoryAddress ipc, int address, long value, byte command, byte batch) {
+                writes.incrementAndGet();
+                super.write(ipc, address, value, command, batch);
+            }
+        });
+        MemoryFreezer freezer = new MemoryFreezer(client);
+        freezer.freeze(0x10, 5);
+        freezer.tick();
+        assertEquals(5, server.readInt(0x10));
+
+        // Holding the monitor makes the next scheduled tick wait for it until the freezer is closed.
+        int written;
+        synchronized (freezer) {
+            freezer.start(Duration.ofMillis(1));
+            Thread.sleep(50);
+            freezer.close();
+            written = writes.get();
+        }
+        Thread.sleep(50);
+        assertEquals(written, writes.get());
+    }
+}
@@ -0,0 +1,111 @@
+package pinej;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MemoryScannerTest extends FakeServerTest {
+    private static final int MEMORY = 1 << 20;
+
+    private MemoryScanner scanner;
+
+    private MemoryScanner start(MemoryScanner.ValueType type, int start, int length) throws IOException {
+        scanner = start(PineEnums.TargetPlatform.PS2, MEMORY).scanner(type, start, length);
+        return scanner;
+    }
+
+    @AfterEach
+    void closeScanner() {
+        if (scanner != null) {
+            scanner.close();
+        }
+    }
+
+    @Test
+    void exactThenRelative() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.INT, 0, MEMORY);
+        server.writeInt(0x100, 0x1234);
+        server.writeInt(0x4_0000, 0x1234);
+        server.writeInt(0xF_FFFC, 0x1234);
+        assertEquals(3, scanner.scan(MemoryScanner.Filter.exact(0x1234)));
+        assertArrayEquals(new int[] {0x100, 0x4_0000, 0xF_FFFC}, scanner.addresses(10));
+
+        server.writeInt(0x100, 0x1235);
+        server.writeInt(0x4_0000, 0x1000);
+        assertEquals(1, scanner.scan(MemoryScanner.Filter.increased()));
+        assertArrayEquals(new int[] {0x100}, scanner.addresses(10));
+    }
+
+    @Test
+    void denseRelativeScansSwitchToSparse() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.INT, 0, MEMORY);
+        assertEquals(MEMORY / Integer.BYTES, scanner.scan(MemoryScanner.Filter.any()));
+        assertEquals(MEMORY / Integer.BYTES, scanner.scan(MemoryScanner.Filter.unchanged()));
+
+        int[] changed = {0x0, 0x3_FFFC, 0x4_0000, 0x8_1234 & ~3, MEMORY - 4};
+        for (int address : changed) {
+            server.writeInt(address, -7);
+        }
+        assertEquals(changed.length, scanner.scan(MemoryScanner.Filter.changed()));
+        assertArrayEquals(changed, scanner.addresses(changed.length));
+
+        server.writeInt(0x4_0000, 5);
+        assertEquals(changed.length - 1, scanner.scan(MemoryScanner.Filter.unchanged()));
+        server.writeInt(0x0, -8);
+        assertEquals(1, scanner.scan(MemoryScanner.Filter.decreased()));
+        assertArrayEquals(new int[] {0x0}, scanner.addresses(1));
+    }
+
+    @Test
+    void valuesAreComparedAsTyped() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.FLOAT, 0x1000, 0x100);
+        server.writeInt(0x1010, Float.floatToIntBits(1.5f));
+        server.writeInt(0x1020, Float.floatToIntBits(-1.5f));
+        server.writeInt(0x1030, Float.floatToIntBits(2.5f));
+        assertEquals(1, scanner.scan(MemoryScanner.Filter.range(1.0, 2.0)));
+        assertArrayEquals(new int[] {0x1010}, scanner.addresses(10));
+        scanner.close();
+
+        scanner = client.scanner(MemoryScanner.ValueType.BYTE, 0x1000, 0x100);
+        server.writeMemory(0x1040, new byte[] {(byte) 0xFF});
+        assertEquals(1, scanner.scan(MemoryScanner.Filter.range(-1, -1)));
+        server.writeMemory(0x1040, new byte[] {(byte) 0x80});
+        assertEquals(1, scanner.scan(MemoryScanner.Filter.decreased()));
+        scanner.forEach((address, value) -> {
+            assertEquals(0x1040, address);
+            assertEquals(Byte.MIN_VALUE, value);
+            return true;
+        });
+        scanner.close();
+    }
+
+    @Test
+    void addressesLimit() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.SHORT, 0, 0x100);
+        assertEquals(0x80, scanner.scan(MemoryScanner.Filter.any()));
+        assertArrayEquals(new int[0], scanner.addresses(0));
+        assertArrayEquals(new int[] {0, 2}, scanner.addresses(2));
+        assertThrows(IllegalArgumentException.class, () -> scanner.addresses(-1));
+    }
+
+    @Test
+    void firstScanNeedsAbsoluteFilter() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.INT, 0, 0x100);
+        assertThrows(IllegalArgumentException.class, () -> scanner.scan(MemoryScanner.Filter.changed()));
+        assertEquals(0, scanner.count());
+    }
+
+    @Test
+    void failedReadFailsScan() throws IOException {
+        MemoryScanner scanner = start(MemoryScanner.ValueType.INT, MEMORY - 0x1000, 0x2000);
+        assertThrows(IllegalStateException.class, () -> scanner.scan(MemoryScanner.Filter.any()));
+        scanner.reset();
+        assertEquals(0, scanner.count());
+    }
+}
@@ -0,0 +1,50 @@
+package pinej;
+
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryWatcherTest extends FakeServerTest {
+    private volatile boolean released;
+
+    @Test
+    void closeWaitsForRunningPoll() throws Exception {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16);
+        CountDownLatch entered = new CountDownLatch(1);
+        AtomicInteger changes = new AtomicInteger();
+        MemoryWatcher watcher = new MemoryWatcher(client);
+        watcher.watchInt(0x10, (address, oldValue, newValue) -> {
+            changes.incrementAndGet();
+            entered.countDown();
+            // Not interruptible, so closing can not cut the listener short.
+            while (!released) {
+                Thread.onSpinWait();
+            }
+        });
+        watcher.poll();
+        watcher.start(Duration.ofMillis(1));
+        server.writeInt(0x10, 1);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> close = CompletableFuture.runAsync(watcher::close);
+        Thread.sleep(100);
+        assertFalse(close.isDone());
+        released = true;
+        close.get(5, TimeUnit.SECONDS);
+
+        int notified = changes.get();
+        server.writeInt(0x10, 2);
+        Thread.sleep(50);
+        assertEquals(notified, changes.get());
+    }
+}
@@ -0,0 +1,73 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PineBatchTest extends FakeServerTest {
+    @Test
+    void queueingAfterSendNeedsNewSend() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16);
+        server.writeInt(0x10, 1);
+        server.writeInt(0x20, 2);
+        PineBatch batch = client.batch();
+        PineBatch.Handle<Integer> first = batch.readInt(0x10);
+        batch.send();
+        assertEquals(1, first.get());
+
+        PineBatch.Handle<Integer> second = batch.readInt(0x20);
+        IllegalStateException e = assertThrows(IllegalStateException.class, second::get);
+        assertEquals("Batch has not been sent", e.getMessage());
+        assertThrows(IllegalStateException.class, first::get);
+        batch.send();
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+    }
+
+    @Test
+    void clearedHandlesAreInvalid() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16);
+        server.writeInt(0x10, 1);
+        PineBatch batch = client.batch();
+        PineBatch.Handle<Integer> stale = batch.readInt(0x10);
+        batch.send();
+        batch.clear();
+        batch.readInt(0x10);
+        batch.send();
+        assertThrows(IllegalStateException.class, stale::get);
+    }
+
+    @Test
+    void failedQueueingFinalizesBatch() throws Exception {
+        RuntimeException failure = new RuntimeException("queue");
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16, socket -> new MetricsPineAccessor(socket) {
+            private boolean failed;
+
+            @Override
+            public long read(MemoryAddress ipc, int address, byte command, byte batch) {
+                if (!failed) {
+                    failed = true;
+                    throw failure;
+                }
+                return super.read(ipc, address, command, batch);
+            }
+        });
+        server.writeInt(0x10, 3);
+        PineBatch batch = client.batch();
+        PineBatch.Handle<Integer> handle = batch.readInt(0x10);
+        assertSame(failure, assertThrows(RuntimeException.class, batch::send));
+
+        // Another thread can only initialize a batch if the failed one was finalized.
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> CompletableFuture.runAsync(batch::send).get());
+        assertEquals(3, handle.get());
+    }
+}
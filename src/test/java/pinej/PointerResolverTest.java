@@ -0,0 +1,44 @@
+package pinej;
+
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointerResolverTest extends FakeServerTest {
+    private static final int MEMORY = 1 << 16;
+
+    @Test
+    void failedLevelIsReadAgain() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, MEMORY);
+        server.writeInt(0x100, 0x1000);
+        server.writeInt(0x1010, 0x2000);
+        server.writeInt(0x104, 0x3000);
+        server.writeInt(0x3010, 0x4000);
+        PointerResolver resolver = client.pointerResolver();
+        PointerResolver.Entry first = resolver.register(0x100, 0x10, 0x4);
+        PointerResolver.Entry second = resolver.register(0x104, 0x10, 0x8);
+        resolver.refresh();
+        assertEquals(0x2004, first.address());
+        assertEquals(0x4008, second.address());
+
+        // The roots are read, but the second level fails as one of its reads is out of range.
+        server.writeInt(0x100, 0x5000);
+        server.writeInt(0x5010, 0x6000);
+        server.writeInt(0x104, MEMORY);
+        assertThrows(IllegalStateException.class, resolver::validate);
+        assertFalse(first.isValid());
+
+        // The first root is unchanged now, but the level below it was not read after it changed.
+        server.writeInt(0x104, 0x3000);
+        assertTrue(resolver.validate());
+        assertEquals(0x6004, first.address());
+        assertEquals(0x4008, second.address());
+        assertFalse(resolver.validate());
+    }
+}
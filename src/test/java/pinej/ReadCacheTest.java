@@ -0,0 +1,150 @@
+package pinej;
+
+import jdk.incubator.foreign.MemoryAddress;
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadCacheTest extends FakeServerTest {
+    private volatile Runnable duringRead;
+
+    private PineClient start(ReadCache cache) throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2, 1 << 16, socket -> new MetricsPineAccessor(socket) {
+            @Override
+            public long read(MemoryAddress ipc, int address, byte command, byte batch) {
+                long value = super.read(ipc, address, command, batch);
+                Runnable hook = duringRead;
+                if (hook != null) {
+                    duringRead = null;
+                    hook.run();
+                }
+                return value;
+            }
+        });
+        client.setReadCache(cache);
+        return client;
+    }
+
+    @Test
+    void removalKeepsCollidingEntries() throws IOException {
+        ReadCache cache = ReadCache.perTick(1024);
+        PineClient client = start(cache);
+        Random random = new Random(21);
+        int words = 600;
+        for (int i = 0; i < words; i++) {
+            server.writeInt(i * 8, random.nextInt());
+        }
+        for (int i = 0; i < words; i++) {
+            assertEquals(server.readInt(i * 8), client.readInt(i * 8));
+        }
+        assertEquals(words, cache.stats().misses());
+        assertEquals(words, cache.stats().size());
+
+        cache.resetStats();
+        int invalidated = 0;
+        for (int i = 0; i < words; i++) {
+            if (random.nextBoolean()) {
+                invalidated++;
+                server.writeInt(i * 8, random.nextInt());
+                client.invalidate(i * 8, 4);
+            }
+        }
+        assertEquals(invalidated, cache.stats().invalidations());
+        assertEquals(words - invalidated, cache.stats().size());
+        for (int i = 0; i < words; i++) {
+            assertEquals(server.readInt(i * 8), client.readInt(i * 8), "word " + i);
+        }
+        assertEquals(invalidated, cache.stats().misses());
+        assertEquals(words - invalidated, cache.stats().hits());
+    }
+
+    @Test
+    void rebuildDropsExpiredEntriesAndClearsAtCapacity() throws IOException {
+        ReadCache cache = ReadCache.perTick(64);
+        PineClient client = start(cache);
+        Random random = new Random(22);
+        for (int i = 0; i < 1024; i++) {
+            server.writeInt(i * 8 + 4, random.nextInt());
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 200; i++) {
+                int address = random.nextInt(1024) * 8 + 4;
+                assertEquals(server.readInt(address), client.readInt(address));
+            }
+            assertTrue(cache.stats().size() <= 96, "size " + cache.stats().size());
+            cache.tick();
+        }
+        cache.resetStats();
+        for (int i = 0; i < 50; i++) {
+            client.readInt(i * 8 + 4);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertEquals(server.readInt(i * 8 + 4), client.readInt(i * 8 + 4));
+        }
+        assertEquals(50, cache.stats().misses());
+        assertEquals(50, cache.stats().hits());
+    }
+
+    @Test
+    void writeDuringMissIsNotCached() throws IOException {
+        ReadCache cache = ReadCache.perTick(64);
+        PineClient client = start(cache);
+        server.writeInt(0x100, 1);
+        duringRead = () -> client.write(0x100, 2);
+        assertEquals(1, client.readInt(0x100));
+        assertEquals(2, client.readInt(0x100));
+        assertEquals(2, server.readInt(0x100));
+
+        server.writeInt(0x200, 1);
+        duringRead = () -> client.invalidate(0x204, 1);
+        assertEquals(1, client.readInt(0x200));
+        long misses = cache.stats().misses();
+        assertEquals(1, client.readInt(0x200));
+        assertEquals(misses + 1, cache.stats().misses());
+    }
+
+    @Test
+    void bulkWritesInvalidateAfterSending() throws IOException {
+        ReadCache cache = ReadCache.perTick(64);
+        PineClient client = start(cache);
+        assertEquals(0, client.readInt(0x300));
+        BulkAccess.Writes writes = new BulkAccess.Writes(client);
+        writes.write(0x300, 7, Integer.BYTES);
+        writes.write(0x304, 8, Integer.BYTES);
+        // Read while the writes are only queued, the old value is cached again.
+        assertEquals(0, client.readInt(0x300));
+        writes.finish();
+        assertEquals(7, client.readInt(0x300));
+        assertEquals(8, client.readInt(0x304));
+
+        PineBatch batch = client.batch();
+        batch.write(0x300, 9);
+        batch.send();
+        assertEquals(9, client.readInt(0x300));
+    }
+
+    @Test
+    void failuresAreNotCached() throws IOException {
+        ReadCache cache = ReadCache.perTick(64);
+        PineClient client = start(cache);
+        server.writeInt(0x400, 7);
+        server.setStatus(PineEnums.Status.SHUTDOWN);
+        client.readInt(0x400);
+        assertEquals(PineEnums.Error.FAIL, client.getError());
+        server.setStatus(PineEnums.Status.RUNNING);
+        assertEquals(7, client.readInt(0x400));
+
+        long misses = cache.stats().misses();
+        server.setStatus(PineEnums.Status.SHUTDOWN);
+        client.write(0x400, 9);
+        assertEquals(PineEnums.Error.FAIL, client.getError());
+        server.setStatus(PineEnums.Status.RUNNING);
+        assertEquals(7, client.readInt(0x400));
+        assertEquals(misses + 1, cache.stats().misses());
+    }
+}
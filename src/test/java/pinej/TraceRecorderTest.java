@@ -0,0 +1,147 @@
+package pinej;
+
+import org.junit.jupiter.api.Test;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceRecorderTest extends FakeServerTest {
+    private static final List<TraceRecorder.Region> REGIONS = List.of(
+            new TraceRecorder.Region(0x100, 40),
+            new TraceRecorder.Region(0x2000, 333));
+
+    private static final int FRAME_SIZE = 40 + 333;
+
+    @Test
+    void deltaRoundTripPs2() throws IOException {
+        deltaRoundTrip(PineEnums.TargetPlatform.PS2, ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    void deltaRoundTripPs3() throws IOException {
+        deltaRoundTrip(PineEnums.TargetPlatform.PS3, ByteOrder.BIG_ENDIAN);
+    }
+
+    private void deltaRoundTrip(PineEnums.TargetPlatform platform, ByteOrder order) throws IOException {
+        start(platform, 1 << 16);
+        Path file = directory.resolve("trace.bin");
+        Random random = new Random(15);
+        List<byte[]> expected = new ArrayList<>();
+        try (TraceRecorder recorder = client.traceRecorder(file, REGIONS, 4)) {
+            for (int frame = 0; frame < 24; frame++) {
+                if (frame == 9) {
+                    // Every byte changes, so the delta would be larger than a keyframe.
+                    fill(random, REGIONS.get(0).address(), 40);
+                    fill(random, REGIONS.get(1).address(), 333);
+                } else if (frame % 3 != 0) {
+                    for (int i = random.nextInt(6); i > 0; i--) {
+                        TraceRecorder.Region region = REGIONS.get(random.nextInt(REGIONS.size()));
+                        int length = 1 + random.nextInt(12);
+                        fill(random, region.address() + random.nextInt(region.length() - length + 1), length);
+                    }
+                }
+                long size = recorder.size();
+                recorder.tick();
+                if (frame % 3 == 0 && frame % 4 != 0 && frame != 9) {
+                    assertEquals(TraceRecorder.FRAME_HEADER, recorder.size() - size);
+                }
+                expected.add(snapshot());
+            }
+            assertEquals(expected.size(), recorder.frameCount());
+        }
+
+        try (TraceReader reader = TraceReader.open(file)) {
+            assertEquals(REGIONS, reader.regions());
+            assertEquals(order, reader.byteOrder());
+            assertEquals(expected.size(), reader.frameCount());
+            for (int frame = 0; frame < expected.size(); frame++) {
+                assertEquals(frame % 4 == 0 || frame == 9, reader.isKeyframe(frame), "keyframe " + frame);
+            }
+            for (int frame = 0; frame < expected.size(); frame++) {
+                assertFrame(expected, reader, frame);
+            }
+            for (int frame = expected.size() - 1; frame >= 0; frame--) {
+                assertFrame(expected, reader, frame);
+            }
+            for (int i = 0; i < 100; i++) {
+                assertFrame(expected, reader, random.nextInt(expected.size()));
+            }
+            ByteBuffer region = reader.region(5, 1);
+            assertEquals(order, region.order());
+            byte[] bytes = new byte[333];
+            region.get(bytes);
+            assertArrayEquals(slice(expected.get(5), 40, 333), bytes);
+        }
+    }
+
+    @Test
+    void truncatedTraceKeepsCompleteFrames() throws IOException {
+        start(PineEnums.TargetPlatform.PS2, 1 << 16);
+        Path file = directory.resolve("trace.bin");
+        List<byte[]> expected = new ArrayList<>();
+        long lastComplete;
+        try (TraceRecorder recorder = client.traceRecorder(file, REGIONS, 8)) {
+            for (int frame = 0; frame < 5; frame++) {
+                server.writeInt(0x2000 + frame * 4, frame + 1);
+                recorder.tick();
+                expected.add(snapshot());
+            }
+            lastComplete = recorder.size();
+            server.writeInt(0x104, 99);
+            recorder.tick();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(lastComplete + TraceRecorder.FRAME_HEADER + 1);
+        }
+        try (TraceReader reader = TraceReader.open(file)) {
+            assertEquals(expected.size(), reader.frameCount());
+            assertTrue(reader.isKeyframe(0));
+            assertFalse(reader.isKeyframe(4));
+            for (int frame = expected.size() - 1; frame >= 0; frame--) {
+                assertFrame(expected, reader, frame);
+            }
+        }
+    }
+
+    private void fill(Random random, int address, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        server.writeMemory(address, data);
+    }
+
+    private byte[] snapshot() {
+        byte[] frame = new byte[FRAME_SIZE];
+        int offset = 0;
+        for (TraceRecorder.Region region : REGIONS) {
+            System.arraycopy(server.readMemory(region.address(), region.length()), 0, frame, offset, region.length());
+            offset += region.length();
+        }
+        return frame;
+    }
+
+    private static byte[] slice(byte[] data, int offset, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(data, offset, slice, 0, length);
+        return slice;
+    }
+
+    private static void assertFrame(List<byte[]> expected, TraceReader reader, int frame) {
+        ByteBuffer contents = reader.frame(frame);
+        byte[] bytes = new byte[contents.remaining()];
+        contents.get(bytes);
+        assertArrayEquals(expected.get(frame), bytes, "frame " + frame);
+    }
+}
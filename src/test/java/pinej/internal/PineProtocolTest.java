@@ -0,0 +1,48 @@
+package pinej.internal;
+
+import org.junit.jupiter.api.Test;
+import pinej.PineEnums;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PineProtocolTest {
+    @Test
+    void memoryCommandSizes() {
+        for (PineEnums.Command read : new PineEnums.Command[]{PineEnums.Command.READ_8, PineEnums.Command.READ_16,
+                PineEnums.Command.READ_32, PineEnums.Command.READ_64}) {
+            assertEquals(5, PineProtocol.requestSize(read.toByte()));
+            assertEquals(PineProtocol.width(read.toByte()), PineProtocol.replySize(read.toByte()));
+        }
+        assertEquals(6, PineProtocol.requestSize(PineEnums.Command.WRITE_8.toByte()));
+        assertEquals(7, PineProtocol.requestSize(PineEnums.Command.WRITE_16.toByte()));
+        assertEquals(9, PineProtocol.requestSize(PineEnums.Command.WRITE_32.toByte()));
+        assertEquals(13, PineProtocol.requestSize(PineEnums.Command.WRITE_64.toByte()));
+        assertEquals(0, PineProtocol.replySize(PineEnums.Command.WRITE_64.toByte()));
+        assertEquals(8, PineProtocol.width(PineEnums.Command.WRITE_64.toByte()));
+    }
+
+    @Test
+    void otherCommandSizes() {
+        assertEquals(1, PineProtocol.requestSize(PineEnums.Command.STATUS.toByte()));
+        assertEquals(4, PineProtocol.replySize(PineEnums.Command.STATUS.toByte()));
+        assertEquals(2, PineProtocol.requestSize(PineEnums.Command.SAVE_STATE.toByte()));
+        assertEquals(-1, PineProtocol.requestSize((byte) 0x7F));
+        assertTrue(PineProtocol.isString(PineEnums.Command.GAME_TITLE.toByte()));
+        assertTrue(PineProtocol.isString(PineEnums.Command.VERSION.toByte()));
+        assertFalse(PineProtocol.isString(PineEnums.Command.STATUS.toByte()));
+    }
+
+    @Test
+    void socketPaths() {
+        Path dir = Path.of("/run/user/1000");
+        assertEquals(dir.resolve("pcsx2.sock"),
+                PineProtocol.socketPath(dir, PineEnums.TargetPlatform.PS2, PineProtocol.PS2_DEFAULT_SLOT));
+        assertEquals(dir.resolve("pcsx2.sock.28100"), PineProtocol.socketPath(dir, PineEnums.TargetPlatform.PS2, 28100));
+        assertEquals(dir.resolve("rpcs3.sock"),
+                PineProtocol.socketPath(dir, PineEnums.TargetPlatform.PS3, PineProtocol.PS3_DEFAULT_SLOT));
+    }
+}
@@ -0,0 +1,171 @@
+package pinej.internal;
+
+import jdk.incubator.foreign.MemoryAddress;
+import org.junit.jupiter.api.Test;
+import pinej.PineAccessor;
+import pinej.PineBatch;
+import pinej.PineClient;
+import pinej.PineEnums;
+import pinej.testing.FakeServerTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PineSocketAccessorTest extends FakeServerTest {
+    private PineClient start(PineEnums.TargetPlatform platform) throws IOException {
+        return start(platform, 1 << 20);
+    }
+
+    @Test
+    void scalarRoundTripPs2() throws IOException {
+        scalarRoundTrip(start(PineEnums.TargetPlatform.PS2));
+        assertEquals(0x12345678, server.readInt(0x104));
+    }
+
+    @Test
+    void scalarRoundTripPs3() throws IOException {
+        scalarRoundTrip(start(PineEnums.TargetPlatform.PS3));
+        assertEquals(0x12345678, server.readInt(0x104));
+    }
+
+    private void scalarRoundTrip(PineClient client) {
+        client.write(0x100, (byte) -5);
+        client.write(0x102, (short) -1234);
+        client.write(0x104, 0x12345678);
+        client.write(0x108, 0x0123456789ABCDEFL);
+        client.write(0x110, 1.5f);
+        client.write(0x118, -2.25);
+        assertEquals(-5, client.readByte(0x100));
+        assertEquals(-1234, client.readShort(0x102));
+        assertEquals(0x12345678, client.readInt(0x104));
+        assertEquals(0x0123456789ABCDEFL, client.readLong(0x108));
+        assertEquals(1.5f, client.readFloat(0x110));
+        assertEquals(-2.25, client.readDouble(0x118));
+    }
+
+    @Test
+    void batchIsOneMessage() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2);
+        server.writeInt(0x200, 77);
+        server.setGameInfo(new PineClient.GameInfo("Title", "SLUS-00001", "uuid", "1.00"));
+        PineBatch batch = client.batch();
+        PineBatch.Handle<Void> write = batch.write(0x204, 99);
+        PineBatch.Handle<Integer> read = batch.readInt(0x200);
+        PineBatch.Handle<PineEnums.Status> status = batch.getStatus();
+        PineBatch.Handle<PineClient.GameInfo> info = batch.getGameInfo();
+        long messages = server.messageCount();
+        batch.send();
+        assertEquals(1, server.messageCount() - messages);
+        assertEquals(77, read.get());
+        assertEquals(PineEnums.Status.RUNNING, status.get());
+        assertEquals("SLUS-00001", info.get().id());
+        assertEquals(99, server.readInt(0x204));
+        write.get();
+    }
+
+    @Test
+    void rangesLargerThanOneMessage() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2);
+        byte[] data = new byte[600_000];
+        new Random(1).nextBytes(data);
+        client.writeBytes(3, data);
+        assertArrayEquals(data, server.readMemory(3, data.length));
+        assertArrayEquals(data, client.readBytes(3, data.length));
+    }
+
+    @Test
+    void statusFollowsServer() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2);
+        server.setStatus(PineEnums.Status.PAUSED);
+        assertEquals(PineEnums.Status.PAUSED, client.getStatus());
+        server.setStatus(PineEnums.Status.SHUTDOWN);
+        assertEquals(PineEnums.Status.SHUTDOWN, client.getStatus());
+    }
+
+    @Test
+    void failedCommandSetsError() throws IOException {
+        PineClient client = start(PineEnums.TargetPlatform.PS2);
+        client.readInt(1 << 20);
+        assertEquals(PineEnums.Error.FAIL, client.getError());
+        client.readInt(0);
+        assertEquals(PineEnums.Error.SUCCESS, client.getError());
+        assertThrows(IllegalStateException.class, () -> client.readBytes((1 << 20) - 2, 8));
+    }
+
+    @Test
+    void batchesOfThreadsDoNotMix() throws Exception {
+        start(PineEnums.TargetPlatform.PS2);
+        for (int i = 0; i < 128; i++) {
+            server.writeInt(i * 4, i);
+        }
+        PineSocketAccessor accessor = new PineSocketAccessor(directory);
+        MemoryAddress ipc = accessor.allocatePS2();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 2; thread++) {
+                int first = thread * 64;
+                results.add(executor.submit(() -> {
+                    for (int round = 0; round < 50; round++) {
+                        accessor.initializeBatch(ipc);
+                        for (int i = 0; i < 64; i++) {
+                            accessor.read(ipc, (first + i) * 4, PineEnums.Command.READ_32.toByte(), (byte) 1);
+                            Thread.yield();
+                        }
+                        int cmd = accessor.finalizeBatch(ipc);
+                        try {
+                            accessor.sendCommand(ipc, cmd);
+                            for (int i = 0; i < 64; i++) {
+                                assertEquals(first + i,
+                                        accessor.getReply(ipc, cmd, i, PineEnums.Command.READ_32.toByte()));
+                            }
+                        } finally {
+                            accessor.freeBatchCommand(cmd);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            accessor.deletePS2(ipc);
+        }
+    }
+
+    @Test
+    void batchCommandsNeedOwnBatch() throws Exception {
+        start(PineEnums.TargetPlatform.PS2);
+        PineSocketAccessor accessor = new PineSocketAccessor(directory);
+        MemoryAddress ipc = accessor.allocatePS2();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            accessor.initializeBatch(ipc);
+            executor.submit(() -> assertThrows(IllegalStateException.class,
+                    () -> accessor.read(ipc, 0, PineEnums.Command.READ_32.toByte(), (byte) 1))).get();
+            accessor.freeBatchCommand(accessor.finalizeBatch(ipc));
+            assertThrows(IllegalStateException.class, () -> accessor.finalizeBatch(ipc));
+        } finally {
+            executor.shutdownNow();
+            accessor.deletePS2(ipc);
+        }
+    }
+
+    @Test
+    void missingServerIsNoConnection() {
+        client = new PineClient(PineAccessor.ofSocket(directory), PineEnums.TargetPlatform.PS2);
+        client.readInt(0);
+        assertEquals(PineEnums.Error.NO_CONNECTION, client.getError());
+    }
+}
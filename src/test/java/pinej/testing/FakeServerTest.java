@@ -0,0 +1,58 @@
+package pinej.testing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import pinej.PineAccessor;
+import pinej.PineClient;
+import pinej.PineEnums;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.UnaryOperator;
+
+/**
+ * Base of tests talking to a {@link FakePineServer} through the socket accessor. The client and the server are closed
+ * after every test, after the {@link AfterEach} methods of the subclass.
+ * <p>
+ * The lifecycle methods are public and the directory is injected as a parameter, so JUnit does not need reflective
+ * access to this package when only tests of other packages are run.
+ */
+public abstract class FakeServerTest {
+    protected Path directory;
+
+    protected FakePineServer server;
+
+    protected PineClient client;
+
+    @BeforeEach
+    public void createDirectory(@TempDir Path directory) {
+        this.directory = directory;
+    }
+
+    protected PineClient start(PineEnums.TargetPlatform platform, int memorySize) throws IOException {
+        return start(platform, memorySize, UnaryOperator.identity());
+    }
+
+    /**
+     * Starts the server in the temporary directory and connects a client to it.
+     *
+     * @param decorator Wraps the socket accessor before the client is created with it.
+     */
+    protected PineClient start(PineEnums.TargetPlatform platform, int memorySize, UnaryOperator<PineAccessor> decorator)
+            throws IOException {
+        server = FakePineServer.start(directory, platform, memorySize);
+        client = new PineClient(decorator.apply(PineAccessor.ofSocket(directory)), platform);
+        return client;
+    }
+
+    @AfterEach
+    public void closeServer() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+}